@@ -0,0 +1,602 @@
+package kastel;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH regression benchmarks for the hot paths of {@link Playlist},
+ * {@link SongParser}, {@link Song} and {@link CommandProcessor}.
+ * <p>
+ * The playlist operations are measured on playlists holding from
+ * {@code 10} up to {@code 10^7} songs spread over all priorities, or with
+ * a history of that size. The paged and positional queries run on queues
+ * from which every {@value #REMOVED_STRIDE}th song has been removed.
+ * Playing one second at a time runs on a queue that is refilled whenever a
+ * song finishes, so its depth stays at the given size and its cost can be
+ * compared across queue depths.
+ * <p>
+ * The other operations that change the playlist run as single shots of
+ * {@value #BATCH_OPERATIONS} calls on a playlist that is created once per
+ * iteration, so building it is neither measured nor repeated for every
+ * call. The scores are per call. Their playlists hold from
+ * {@value #BATCH_OPERATIONS} songs, so that every removal hits a queued
+ * song, up to {@code 10^6} songs, which keeps the setup of the iterations
+ * short. Playing the whole queue is a single call per iteration. Parsing and
+ * formatting use a fixed set of songs, and the end-to-end benchmarks run a
+ * synthetic script of add, next, play, peek and remove commands, or of add
+ * commands only, one by one or in batches, through a command processor. The
+ * mixed script also runs with a subscriber that receives every change of
+ * the playlist.
+ * <p>
+ * Build with {@code mvn -B package} and run with {@code java -jar
+ * benchmarks/target/benchmarks.jar HotPathBenchmark -rf json}; the sizes
+ * can be restricted with {@code -p size=100,1000}.
+ * @author ujnaa
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class HotPathBenchmark {
+    private static final int BATCH_OPERATIONS = 10_000;
+    private static final int BATCH_WARMUP_ITERATIONS = 10;
+    private static final int BATCH_ITERATIONS = 10;
+    private static final int SCRIPT_LINES = 200_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int REMOVED_STRIDE = 10;
+    private static final int BATCH_LINES = 10_000;
+    private static final int DISTINCT_SONGS = 1 << 10;
+    private static final int DISTINCT_NAMES = 1 << 10;
+    private static final int MAX_LENGTH = 600;
+    private static final int ID_STRIDE = 7_919;  // prime, so i * stride mod size visits every id
+    private static final int SMALL_SECONDS = 1;
+    private static final int HUGE_SECONDS = Integer.MAX_VALUE;
+    private static final long SEED = 42;
+    private static final int PERCENT = 100;
+    private static final int ADD_PERCENT = 50;
+    private static final int NEXT_PERCENT = 55;
+    private static final int PLAY_PERCENT = 70;
+    private static final int PEEK_PERCENT = 90;
+    private static final int MAX_PLAY_SECONDS = 120;
+
+    private static final String[] ARTISTS = names("Artist ");
+    private static final String[] TITLES = names("Title ");
+
+    /**
+     * Adds a song in round-robin priorities.
+     *
+     * @param state a playlist of the iteration
+     * @return the id of the next song
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = BATCH_WARMUP_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @Measurement(iterations = BATCH_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @OperationsPerInvocation(BATCH_OPERATIONS)  // divides the time of a batch into calls
+    public int addSong(Fresh state) {
+        Playlist playlist = state.playlist;
+        int id = state.nextAddedId();
+        playlist.addSong(song(id, id % playlist.getNumPriorities()));
+        return playlist.peek().getId();
+    }
+
+    /**
+     * Adds a song in front of the first priority.
+     *
+     * @param state a playlist of the iteration
+     * @return the id of the next song
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = BATCH_WARMUP_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @Measurement(iterations = BATCH_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @OperationsPerInvocation(BATCH_OPERATIONS)
+    public int addNext(Fresh state) {
+        state.playlist.addNext(song(state.nextAddedId(), 0));
+        return state.playlist.peek().getId();
+    }
+
+    /**
+     * Plays one second. Whenever a song finishes, another one is queued, so
+     * the depth of the queue does not change.
+     *
+     * @param state a queued playlist
+     * @return the size of the history
+     */
+    @Benchmark
+    public int playSmall(Queued state) {
+        Playlist playlist = state.playlist;
+        int played = playlist.historySize();
+        playlist.play(SMALL_SECONDS);
+        int history = playlist.historySize();
+        for (int i = played; i < history; i++) {
+            int id = state.nextAddedId();
+            playlist.addSong(song(id, id % playlist.getNumPriorities()));
+        }
+        return history;
+    }
+
+    /**
+     * Plays the whole queue at once.
+     *
+     * @param state a playlist of the iteration
+     * @return the size of the history
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = BATCH_WARMUP_ITERATIONS)
+    @Measurement(iterations = BATCH_ITERATIONS)
+    public int playHuge(Fresh state) {
+        state.playlist.play(HUGE_SECONDS);
+        return state.playlist.historySize();
+    }
+
+    /**
+     * Removes a queued song. The ids of a batch are distinct.
+     *
+     * @param state a playlist of the iteration
+     * @return the amount of removed songs
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = BATCH_WARMUP_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @Measurement(iterations = BATCH_ITERATIONS, batchSize = BATCH_OPERATIONS)
+    @OperationsPerInvocation(BATCH_OPERATIONS)
+    public int removeByIdHit(Fresh state) {
+        return state.playlist.removeById(state.nextId());
+    }
+
+    /**
+     * Removes an id that is not queued.
+     *
+     * @param state a queued playlist
+     * @return the amount of removed songs
+     */
+    @Benchmark
+    public int removeByIdMiss(Queued state) {
+        return state.playlist.removeById(state.size + state.nextIndex());
+    }
+
+    /**
+     * Looks at the next song.
+     *
+     * @param state a queued playlist
+     * @return the id of the next song
+     */
+    @Benchmark
+    public int peek(Queued state) {
+        return state.playlist.peek().getId();
+    }
+
+    /**
+     * Lists the whole queue.
+     *
+     * @param state a queued playlist
+     * @return the listed lines
+     */
+    @Benchmark
+    public String[] list(Queued state) {
+        return state.playlist.list();
+    }
+
+    /**
+     * Lists the whole history.
+     *
+     * @param state a played playlist
+     * @return the listed lines
+     */
+    @Benchmark
+    public String[] history(Played state) {
+        return state.playlist.history();
+    }
+
+    /**
+     * Visits a page of the queue.
+     *
+     * @param state a perforated playlist
+     * @param blackhole consumer of the visited songs
+     */
+    @Benchmark
+    public void listPage(Perforated state, Blackhole blackhole) {
+        int pages = Math.max(1, state.playlist.listSize() - PAGE_SIZE);
+        int from = (int) ((long) state.nextIndex() * ID_STRIDE % pages);
+        state.playlist.forEachListed(from, from + PAGE_SIZE, visitor(blackhole));
+    }
+
+    /**
+     * Looks up the position of a song.
+     *
+     * @param state a perforated playlist
+     * @return the position
+     */
+    @Benchmark
+    public int positionOf(Perforated state) {
+        return state.playlist.positionOf(state.nextId());
+    }
+
+    /**
+     * Computes the time until a song starts.
+     *
+     * @param state a perforated playlist
+     * @return the time in seconds
+     */
+    @Benchmark
+    public long timeUntil(Perforated state) {
+        return state.playlist.timeUntil(state.nextId());
+    }
+
+    /**
+     * Computes the remaining play time of the queue.
+     *
+     * @param state a queued playlist
+     * @return the time in seconds
+     */
+    @Benchmark
+    public long remainingPlayTime(Queued state) {
+        return state.playlist.remainingPlayTime();
+    }
+
+    /**
+     * Visits the history entries of a song.
+     *
+     * @param state a played playlist
+     * @param blackhole consumer of the visited songs
+     */
+    @Benchmark
+    public void historyById(Played state, Blackhole blackhole) {
+        state.playlist.forEachHistoryById(state.nextId(), visitor(blackhole));
+    }
+
+    /**
+     * Parses a song definition with its priority.
+     *
+     * @param state the song definitions
+     * @return the parsed song
+     */
+    @Benchmark
+    public Song parseWithPriority(Songs state) {
+        return SongParser.parseWithPriority(state.definitions[state.nextIndex()]);
+    }
+
+    /**
+     * Formats a song for a listing.
+     *
+     * @param state the songs
+     * @return the formatted song
+     */
+    @Benchmark
+    public String toListString(Songs state) {
+        return state.songs[state.nextIndex()].toListString();
+    }
+
+    /**
+     * Runs a whole script through a command processor.
+     *
+     * @param state the processor reading the script
+     */
+    @Benchmark
+    @OperationsPerInvocation(SCRIPT_LINES)
+    public void commandProcessor(Script state) {
+        state.processor.run();
+    }
+
+    private static SongVisitor visitor(Blackhole blackhole) {
+        return (id, artist, title, length) -> blackhole.consume(id);
+    }
+
+    private static Song song(int id, int priority) {
+        int name = id % DISTINCT_NAMES;
+        return new Song(id, ARTISTS[name], TITLES[name], 1 + id % MAX_LENGTH, priority);
+    }
+
+    /**
+     * Creates a playlist with songs of the ids {@code 0} to {@code size - 1}
+     * in round-robin priorities.
+     */
+    private static Playlist queued(int size) {
+        Playlist playlist = new Playlist();
+        Song[] songs = new Song[size];
+        for (int id = 0; id < size; id++) {
+            songs[id] = song(id, id % playlist.getNumPriorities());
+        }
+        playlist.addAll(songs, size);
+        return playlist;
+    }
+
+    private static String[] names(String prefix) {
+        String[] names = new String[DISTINCT_NAMES];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+
+    /**
+     * A playlist with a cursor over its ids.
+     */
+    abstract static class Ids {
+        Playlist playlist;
+        private int index;
+        private int added;
+
+        /**
+         * Returns the amount of songs the playlist is filled with.
+         *
+         * @return the size parameter
+         */
+        abstract int size();
+
+        /**
+         * Fills the playlist with {@link #size()} songs and resets the
+         * cursor.
+         */
+        void fill() {
+            playlist = queued(size());
+            index = 0;
+            added = 0;
+        }
+
+        /**
+         * Returns the next index of the cursor.
+         *
+         * @return the index
+         */
+        int nextIndex() {
+            return index++ & Integer.MAX_VALUE;
+        }
+
+        /**
+         * Returns the next id in a fixed order that visits every id.
+         *
+         * @return the id
+         */
+        int nextId() {
+            return (int) ((long) nextIndex() * ID_STRIDE % size());
+        }
+
+        /**
+         * Returns an id that has not been added to the playlist yet.
+         *
+         * @return the id
+         */
+        int nextAddedId() {
+            return size() + added++;
+        }
+    }
+
+    /**
+     * A playlist of a size parameter that is shared by all invocations.
+     */
+    @State(Scope.Thread)
+    public abstract static class Sized extends Ids {
+        /**
+         * Amount of songs in the playlist.
+         */
+        @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Override
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A queued playlist.
+     */
+    public static class Queued extends Sized {
+        /**
+         * Fills the playlist.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            fill();
+        }
+    }
+
+    /**
+     * A queued playlist like {@link Queued} for the benchmarks that change
+     * it, created again for every iteration. It holds at least
+     * {@value #BATCH_OPERATIONS} songs, so that the ids of a batch of
+     * removals are distinct and queued.
+     */
+    @State(Scope.Thread)
+    public static class Fresh extends Ids {
+        /**
+         * Amount of songs in the playlist.
+         */
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        /**
+         * Fills the playlist.
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            fill();
+        }
+    }
+
+    /**
+     * A queued playlist from which every {@value #REMOVED_STRIDE}th song has
+     * been removed.
+     */
+    public static class Perforated extends Sized {
+        /**
+         * Fills the playlist and removes the songs.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            fill();
+            for (int id = 0; id < size; id += REMOVED_STRIDE) {
+                playlist.removeById(id);
+            }
+        }
+    }
+
+    /**
+     * A playlist whose history holds all songs.
+     */
+    public static class Played extends Sized {
+        /**
+         * Fills the playlist and plays it.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            fill();
+            while (playlist.peek() != null) {
+                playlist.play(HUGE_SECONDS);
+            }
+        }
+    }
+
+    /**
+     * A fixed set of songs and their definitions.
+     */
+    @State(Scope.Thread)
+    public static class Songs {
+        Song[] songs;
+        String[] definitions;
+        private int index;
+
+        /**
+         * Creates the songs.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            songs = new Song[DISTINCT_SONGS];
+            definitions = new String[DISTINCT_SONGS];
+            for (int i = 0; i < songs.length; i++) {
+                songs[i] = song(i, i % Playlist.DEFAULT_NUM_PRIORITIES);
+                definitions[i] = songs[i].toListString() + ":" + songs[i].getPriority();
+            }
+        }
+
+        /**
+         * Returns the next index into the songs.
+         *
+         * @return the index
+         */
+        int nextIndex() {
+            return index++ & (DISTINCT_SONGS - 1);
+        }
+    }
+
+    /**
+     * A command processor for a new playlist that reads a synthetic script.
+     */
+    @State(Scope.Thread)
+    public static class Script {
+        /**
+         * The script: random commands, the same after "subscribe", add
+         * commands only, or add commands in batches of
+         * {@value #BATCH_LINES}.
+         */
+        @Param({"mixed", "subscribed", "add", "batchAdd"})
+        public String script;
+
+        CommandProcessor processor;
+        private byte[] bytes;
+
+        /**
+         * Creates the script.
+         */
+        @Setup(Level.Trial)
+        public void createScript() {
+            CharSequence lines;
+            if ("subscribed".equals(script)) {
+                lines = mixedScript(new StringBuilder("subscribe\n"));
+            } else if ("add".equals(script)) {
+                lines = addScript(SCRIPT_LINES);
+            } else if ("batchAdd".equals(script)) {
+                lines = addScript(BATCH_LINES);
+            } else {
+                lines = mixedScript(new StringBuilder());
+            }
+            bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Creates the processor, which consumes its input.
+         */
+        @Setup(Level.Invocation)
+        public void createProcessor() {
+            LineSource input = new ReaderLineSource(new InputStreamReader(
+                    new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+                    ReaderLineSource.DEFAULT_BUFFER_SIZE);
+            processor = new CommandProcessor(new Playlist(), input, Output.discarding());
+        }
+
+        /**
+         * Appends random add, next, play, peek and remove commands to the
+         * script.
+         */
+        private static CharSequence mixedScript(StringBuilder script) {
+            Random random = new Random(SEED);
+            for (int line = 0; line < SCRIPT_LINES; line++) {
+                int kind = random.nextInt(PERCENT);
+                int priority = line % Playlist.DEFAULT_NUM_PRIORITIES;
+                if (kind < ADD_PERCENT) {
+                    script.append("add ").append(song(line, priority).toListString())
+                            .append(':').append(priority);
+                } else if (kind < NEXT_PERCENT) {
+                    script.append("next ").append(song(line, 0).toListString());
+                } else if (kind < PLAY_PERCENT) {
+                    script.append("play ").append(1 + random.nextInt(MAX_PLAY_SECONDS));
+                } else if (kind < PEEK_PERCENT) {
+                    script.append("peek");
+                } else {
+                    script.append("remove ").append(random.nextInt(line + 1));
+                }
+                script.append('\n');
+            }
+            return script;
+        }
+
+        /**
+         * Creates add commands, enclosing every block of the given size in
+         * "begin" and "commit" unless it covers the whole script.
+         */
+        private static CharSequence addScript(int blockLines) {
+            boolean batched = blockLines < SCRIPT_LINES;
+            StringBuilder script = new StringBuilder();
+            for (int line = 0; line < SCRIPT_LINES; line++) {
+                if (batched && line % blockLines == 0) {
+                    script.append("begin\n");
+                }
+                int priority = line % Playlist.DEFAULT_NUM_PRIORITIES;
+                script.append("add ").append(song(line, priority).toListString()).append(':')
+                        .append(priority).append('\n');
+                if (batched && (line % blockLines == blockLines - 1
+                        || line == SCRIPT_LINES - 1)) {
+                    script.append("commit\n");
+                }
+            }
+            return script;
+        }
+    }
+}
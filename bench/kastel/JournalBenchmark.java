@@ -0,0 +1,91 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for how many commands per second {@link CommandJournal}
+ * makes durable for different group commit sizes. A sync size of one byte
+ * forces the journal to the storage device after every entry; larger sizes
+ * share one sync between all entries of a group. The time based trigger is
+ * disabled so that only the size decides.
+ * <p>
+ * Every iteration appends to a new journal file in the given directory,
+ * which is deleted afterwards. Run with {@code java -jar
+ * benchmarks/target/benchmarks.jar JournalBenchmark -p directory=<path>}.
+ * @author ujnaa
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+    private static final long NO_INTERVAL = Long.MAX_VALUE / 1_000_000L;
+    private static final String COMMAND = "add 12345:Some Artist:Some Title:215:3";
+
+    /**
+     * Amount of pending bytes that triggers a sync.
+     */
+    @Param({"1", "1024", "4096", "16384", "65536", "1048576"})
+    public int syncBytes;
+
+    /**
+     * Directory of the journal files, the working directory by default.
+     */
+    @Param(".")
+    public String directory;
+
+    private Path file;
+    private CommandJournal journal;
+
+    /**
+     * Opens a new journal.
+     *
+     * @throws IOException if the file cannot be created
+     */
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        file = Files.createTempFile(Path.of(directory), "journal", ".log");
+        journal = CommandJournal.open(file, syncBytes, NO_INTERVAL);
+    }
+
+    /**
+     * Closes the journal and deletes its file.
+     *
+     * @throws IOException if the journal cannot be synced or deleted
+     */
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Appends one command, syncing the group once it is complete.
+     *
+     * @return the sequence number of the entry
+     * @throws IOException if the journal cannot be written
+     */
+    @Benchmark
+    public long append() throws IOException {
+        return journal.append(COMMAND);
+    }
+}
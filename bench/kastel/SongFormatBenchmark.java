@@ -0,0 +1,83 @@
+package kastel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark comparing the previous {@code String.format} based song
+ * formatting with {@link Song#appendListTo(StringBuilder)} writing into a
+ * reused builder. Every operation formats the next song of a fixed set.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar
+ * SongFormatBenchmark}.
+ * @author ujnaa
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SongFormatBenchmark {
+    private static final String LIST_FORMAT = "%05d:%s:%s:%d";
+    private static final int SONGS = 1024;
+    private static final int MAX_ID = 100_000;
+    private static final int MAX_LENGTH = 600;
+    private static final int ARTISTS = 17;
+
+    private final Song[] songs = new Song[SONGS];
+    private final StringBuilder builder = new StringBuilder();
+    private int index;
+
+    /**
+     * Creates the songs to format.
+     */
+    @Setup(Level.Trial)
+    public void fill() {
+        Random random = new Random(1);
+        for (int i = 0; i < SONGS; i++) {
+            songs[i] = new Song(random.nextInt(MAX_ID), "Artist " + i % ARTISTS, "Title " + i,
+                    random.nextInt(MAX_LENGTH), 0);
+        }
+    }
+
+    /**
+     * Formats a song with {@code String.format}.
+     *
+     * @return the formatted song
+     */
+    @Benchmark
+    public String format() {
+        Song song = nextSong();
+        return String.format(LIST_FORMAT, song.getId(), song.getArtist(), song.getTitle(),
+                song.getLength());
+    }
+
+    /**
+     * Formats a song into the reused builder.
+     *
+     * @return the builder holding the formatted song
+     */
+    @Benchmark
+    public StringBuilder appendListTo() {
+        builder.setLength(0);
+        return nextSong().appendListTo(builder);
+    }
+
+    private Song nextSong() {
+        index = (index + 1) & (SONGS - 1);
+        return songs[index];
+    }
+}
@@ -0,0 +1,82 @@
+package kastel;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for the churn on {@link TimingWheel}: every operation on a
+ * {@link RealtimePlaylist} may replace the task of its song end, so many
+ * tasks are scheduled and cancelled again before they are due. The cost
+ * per pair is compared with a {@link ScheduledThreadPoolExecutor}. How late
+ * expiring tasks run is reported by {@code TimingWheelLatenessReport} in
+ * the tools.
+ * <p>
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar
+ * TimingWheelBenchmark}.
+ * @author ujnaa
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimingWheelBenchmark {
+    private static final long SONG_NANOS = TimeUnit.SECONDS.toNanos(180);
+
+    private final Runnable task = () -> { };
+    private TimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Starts the wheel and the executor.
+     */
+    @Setup(Level.Trial)
+    public void start() {
+        wheel = new TimingWheel(TimingWheel.DEFAULT_TICK_MILLIS);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Stops the wheel and the executor.
+     */
+    @TearDown(Level.Trial)
+    public void stop() {
+        wheel.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules the end of a song on the wheel and cancels it.
+     */
+    @Benchmark
+    public void wheelScheduleCancel() {
+        wheel.schedule(task, SONG_NANOS).cancel();
+    }
+
+    /**
+     * Schedules the end of a song on the executor and cancels it.
+     *
+     * @return whether the task was cancelled
+     */
+    @Benchmark
+    public boolean executorScheduleCancel() {
+        ScheduledFuture<?> future = executor.schedule(task, SONG_NANOS, TimeUnit.NANOSECONDS);
+        return future.cancel(false);
+    }
+}
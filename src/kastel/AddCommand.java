@@ -4,30 +4,32 @@ package kastel;
  * Handles the "add" command that inserts a song into the playlist.
  * @author ujnaa
  */
-public class AddCommand implements Command {
-    private static final String PREFIX = "add ";
-    private static final String INVALID_FORMAT_MESSAGE = "Invalid add command format";
+public class AddCommand implements Command<Song> {
+    private static final String KEYWORD = "add";
 
     @Override
-    public boolean matches(String input) {
-        if (!input.startsWith(PREFIX)) {
-            return false;
-        }
-        String songDef = input.substring(PREFIX.length());
-        try {
-            SongParser.parseWithPriority(songDef);
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+    public String getKeyword() {
+        return KEYWORD;
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        if (!matches(input)) {
-            throw new IllegalArgumentException(INVALID_FORMAT_MESSAGE);
-        }
-        String songDef = input.substring(PREFIX.length());
-        playlist.addSong(SongParser.parseWithPriority(songDef));
+    public Song parse(String arguments) {
+        return arguments == null ? null : SongParser.tryParseWithPriority(arguments);
+    }
+
+    @Override
+    public void execute(Song song, Playlist playlist, Output output) {
+        playlist.addSong(song);
+    }
+
+    @Override
+    public boolean addTo(Song song, PlaylistBatch batch) {
+        batch.add(song);
+        return true;
+    }
+
+    @Override
+    public boolean isMutating() {
+        return true;
     }
 }
@@ -0,0 +1,26 @@
+package kastel;
+
+/**
+ * Handles the "begin" command that starts collecting commands in a
+ * {@link CommandBatch}.
+ * @author ujnaa
+ */
+public class BeginCommand extends KeywordCommand {
+    private static final String COMMAND = "begin";
+    private final CommandBatch batch;
+
+    /**
+     * Creates the command.
+     *
+     * @param batch the batch of the processor executing the command
+     */
+    public BeginCommand(CommandBatch batch) {
+        super(COMMAND);
+        this.batch = batch;
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        batch.begin(playlist);
+    }
+}
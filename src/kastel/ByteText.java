@@ -0,0 +1,58 @@
+package kastel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Character view of a range of UTF-8 encoded bytes that lets the
+ * {@link SongParser} scan a buffer without decoding it first.
+ * <p>
+ * {@link #charAt(int)} returns every byte as one character, which is exact
+ * for ASCII text such as separators and digits; bytes of multi-byte
+ * sequences never collide with ASCII characters. {@link #toString()}
+ * decodes the range as UTF-8, so text fields keep their real characters.
+ * @author ujnaa
+ */
+public final class ByteText implements CharSequence {
+    private static final int BYTE_MASK = 0xFF;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a view of {@code length} bytes starting at the given absolute
+     * position of the buffer.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param offset absolute position of the first byte
+     * @param length amount of bytes
+     */
+    public ByteText(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(offset + index) & BYTE_MASK);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new ByteText(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
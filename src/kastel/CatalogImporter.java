@@ -0,0 +1,147 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads song catalogs into a playlist. A catalog is a text file with one
+ * song per line in the format {@code id:artist:title:length:priority},
+ * encoded as UTF-8. Blank lines are ignored.
+ * <p>
+ * The file is memory-mapped in windows of up to
+ * {@value #MAX_WINDOW_SIZE} bytes and every line is parsed straight from
+ * the mapped bytes. Parsed songs are collected and added to the playlist in
+ * batches of {@value #BATCH_SIZE}. Numbers must use ASCII digits.
+ * @author ujnaa
+ */
+public final class CatalogImporter {
+    /** amount of songs added to the playlist at once */
+    public static final int BATCH_SIZE = 4096;
+    private static final int MAX_WINDOW_SIZE = 1 << 30;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final String LINE_TOO_LONG = "Catalog line exceeds the mapping window";
+
+    private final Playlist playlist;
+    private final Song[] batch;
+    private int batchSize;
+    private long imported;
+    private long skipped;
+
+    private CatalogImporter(Playlist playlist) {
+        this.playlist = playlist;
+        this.batch = new Song[BATCH_SIZE];
+    }
+
+    /**
+     * Adds all songs of the catalog file to the playlist. Lines that are not
+     * valid song definitions or have an unsupported priority are skipped.
+     *
+     * @param path the catalog file
+     * @param playlist the playlist receiving the songs
+     * @return the import statistics
+     * @throws IOException if the file cannot be read
+     */
+    public static Result importFile(Path path, Playlist playlist) throws IOException {
+        CatalogImporter importer = new CatalogImporter(playlist);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int windowSize = (int) Math.min(size - position, MAX_WINDOW_SIZE);
+                boolean last = position + windowSize == size;
+                MappedByteBuffer window =
+                        channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                int consumed = importer.parseLines(window, windowSize, last);
+                if (consumed == 0) {
+                    throw new IOException(LINE_TOO_LONG);
+                }
+                position += consumed;
+            }
+        }
+        importer.flushBatch();
+        return new Result(importer.imported, importer.skipped);
+    }
+
+    /**
+     * Parses all complete lines of the window. The last line only counts as
+     * complete if it ends the file.
+     *
+     * @return the amount of bytes belonging to parsed lines
+     */
+    private int parseLines(MappedByteBuffer window, int windowSize, boolean lastWindow) {
+        int lineStart = 0;
+        for (int i = 0; i < windowSize; i++) {
+            if (window.get(i) == LINE_FEED) {
+                parseLine(window, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lastWindow && lineStart < windowSize) {
+            parseLine(window, lineStart, windowSize);
+            lineStart = windowSize;
+        }
+        return lineStart;
+    }
+
+    private void parseLine(MappedByteBuffer window, int start, int end) {
+        int lineEnd = end;
+        if (lineEnd > start && window.get(lineEnd - 1) == CARRIAGE_RETURN) {
+            lineEnd--;
+        }
+        if (lineEnd == start) {
+            return;
+        }
+        Song song = SongParser.tryParseWithPriority(new ByteText(window, start, lineEnd - start));
+        if (song == null || !playlist.isValidPriority(song.getPriority())) {
+            skipped++;
+            return;
+        }
+        batch[batchSize++] = song;
+        if (batchSize == BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        playlist.addAll(batch, batchSize);
+        imported += batchSize;
+        Arrays.fill(batch, 0, batchSize, null);
+        batchSize = 0;
+    }
+
+    /**
+     * Statistics of a finished import.
+     */
+    public static final class Result {
+        private final long imported;
+        private final long skipped;
+
+        private Result(long imported, long skipped) {
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+
+        /**
+         * Gets the amount of songs added to the playlist.
+         *
+         * @return imported songs
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * Gets the amount of lines that were not valid songs.
+         *
+         * @return skipped lines
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+    }
+}
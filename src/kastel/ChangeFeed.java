@@ -0,0 +1,247 @@
+package kastel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring that hands the changes of a {@link Playlist} to a single
+ * subscriber without locks.
+ * <p>
+ * The playlist publishes every change while it modifies its state, and the
+ * subscriber drains the ring to a {@link ChangeListener} while it holds the
+ * delivery lock of the feed, so several threads of the subscriber may take
+ * turns. Producer and consumer only communicate through the release and
+ * acquire of two counters, so neither waits for the other. Playlists
+ * serialize their modifications, which makes them a single producer even
+ * when several threads modify them.
+ * <p>
+ * A thread of the subscriber that holds the delivery lock drains the
+ * changes it caused itself later. Changes published by other threads, such
+ * as the clock of a {@link RealtimePlaylist} or the sessions sharing a
+ * playlist, wake the thread waiting in {@link #awaitChanges()}, so they are
+ * delivered without waiting for the subscriber's next operation.
+ * <p>
+ * A full ring applies back-pressure: if the producing thread holds the
+ * delivery lock, the pending changes are delivered on the spot before the
+ * modification continues. Any other thread must not wait for the
+ * subscriber, so the feed is invalidated instead and drops further changes
+ * until the subscriber resynchronizes with
+ * {@link Playlist#resync(ChangeFeed)}.
+ * <p>
+ * The feeds of all subscribers of a playlist form a chain, and a change
+ * published to the first feed is offered to every feed of the chain.
+ * @author ujnaa
+ */
+public class ChangeFeed {
+    /** ring capacity used by default */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+    private static final byte ADDED = 0;
+    private static final byte REMOVED = 1;
+    private static final byte STARTED = 2;
+    private static final byte FINISHED = 3;
+    private static final byte SKIPPED = 4;
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle INVALID;
+    private static final VarHandle WAITER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(ChangeFeed.class, "head", long.class);
+            TAIL = lookup.findVarHandle(ChangeFeed.class, "tail", long.class);
+            INVALID = lookup.findVarHandle(ChangeFeed.class, "invalid", boolean.class);
+            WAITER = lookup.findVarHandle(ChangeFeed.class, "waiter", Thread.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final byte[] kinds;
+    private final int[] ids;
+    private final int[] values;  // position, or count of removed songs
+    private final Song[] songs;  // added songs
+    private final int mask;
+    private final ChangeListener listener;
+    private final ReentrantLock deliveryLock;
+    private long head;  // next change to deliver, written by the consumer
+    private long tail;  // next free slot, written by the producer
+    private long knownHead;  // head as last seen by the producer
+    private boolean invalid;
+    private Thread waiter;  // thread parked in awaitChanges, or null
+    ChangeFeed next;  // next feed subscribed to the same playlist, or null
+
+    /**
+     * Creates a feed whose changes are delivered while the given lock is
+     * held.
+     *
+     * @param capacity maximum amount of pending changes, a power of two
+     * @param listener the receiver of the changes
+     * @param deliveryLock the lock held by every thread that drains the feed
+     * @throws IllegalArgumentException if the capacity is not a power of two
+     */
+    public ChangeFeed(int capacity, ChangeListener listener, ReentrantLock deliveryLock) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        kinds = new byte[capacity];
+        ids = new int[capacity];
+        values = new int[capacity];
+        songs = new Song[capacity];
+        mask = capacity - 1;
+        this.listener = listener;
+        this.deliveryLock = deliveryLock;
+    }
+
+    /**
+     * Delivers the pending changes to the listener. The caller must hold the
+     * delivery lock.
+     *
+     * @return the amount of delivered changes
+     */
+    public int drain() {
+        long first = head;
+        long end = (long) TAIL.getAcquire(this);
+        for (long change = first; change < end; change++) {
+            int slot = (int) change & mask;
+            byte kind = kinds[slot];
+            if (kind == ADDED) {
+                listener.added(values[slot], songs[slot]);
+            } else if (kind == REMOVED) {
+                listener.removed(ids[slot], values[slot]);
+            } else if (kind == STARTED) {
+                listener.started(values[slot], ids[slot]);
+            } else if (kind == FINISHED) {
+                listener.finished(values[slot], ids[slot]);
+            } else {
+                listener.skipped(values[slot], ids[slot]);
+            }
+            songs[slot] = null;
+        }
+        HEAD.setRelease(this, end);
+        return (int) (end - first);
+    }
+
+    /**
+     * Checks whether changes were dropped, so that the subscriber has to
+     * resynchronize its copy of the list.
+     *
+     * @return {@code true} if the feed is invalid
+     */
+    public boolean isInvalid() {
+        return (boolean) INVALID.getAcquire(this);
+    }
+
+    /**
+     * Waits until changes are pending or the feed became invalid. Returns
+     * early if the calling thread is interrupted, with its interrupt status
+     * set. Only one thread may wait at a time.
+     */
+    public void awaitChanges() {
+        Thread current = Thread.currentThread();
+        WAITER.setVolatile(this, current);
+        while (!hasChanges() && !current.isInterrupted()) {
+            LockSupport.park(this);
+        }
+        WAITER.setRelease(this, null);
+    }
+
+    private boolean hasChanges() {
+        return (long) TAIL.getVolatile(this) != head || (boolean) INVALID.getVolatile(this);
+    }
+
+    void added(int position, Song song) {
+        for (ChangeFeed feed = this; feed != null; feed = feed.next) {
+            feed.offer(ADDED, song.getId(), position, song);
+        }
+    }
+
+    void removed(int id, int count) {
+        for (ChangeFeed feed = this; feed != null; feed = feed.next) {
+            feed.offer(REMOVED, id, count, null);
+        }
+    }
+
+    void started(int position, int id) {
+        for (ChangeFeed feed = this; feed != null; feed = feed.next) {
+            feed.offer(STARTED, id, position, null);
+        }
+    }
+
+    void finished(int position, int id) {
+        for (ChangeFeed feed = this; feed != null; feed = feed.next) {
+            feed.offer(FINISHED, id, position, null);
+        }
+    }
+
+    void skipped(int position, int id) {
+        for (ChangeFeed feed = this; feed != null; feed = feed.next) {
+            feed.offer(SKIPPED, id, position, null);
+        }
+    }
+
+    /**
+     * Drops all further changes of this feed until {@link #reset()}, for
+     * example because the state of the playlist was replaced.
+     */
+    void invalidate() {
+        INVALID.setRelease(this, true);
+        wakeWaiter();
+    }
+
+    /**
+     * Discards the pending changes and accepts changes again. The producer
+     * must be excluded while the consumer resets the feed.
+     */
+    void reset() {
+        long end = (long) TAIL.getAcquire(this);
+        for (long change = head; change < end; change++) {
+            songs[(int) change & mask] = null;
+        }
+        HEAD.setRelease(this, end);
+        knownHead = end;
+        INVALID.setRelease(this, false);
+    }
+
+    private void offer(byte kind, int id, int value, Song song) {
+        if ((boolean) INVALID.getAcquire(this)) {
+            return;
+        }
+        boolean delivering = deliveryLock.isHeldByCurrentThread();
+        long slotIndex = tail;
+        if (slotIndex - knownHead > mask) {
+            if (delivering) {
+                drain();
+            }
+            knownHead = (long) HEAD.getAcquire(this);
+            if (slotIndex - knownHead > mask) {
+                invalidate();
+                return;
+            }
+        }
+        int slot = (int) slotIndex & mask;
+        kinds[slot] = kind;
+        ids[slot] = id;
+        values[slot] = value;
+        songs[slot] = song;
+        TAIL.setRelease(this, slotIndex + 1);
+        if (!delivering) {
+            wakeWaiter();
+        }
+    }
+
+    /**
+     * Unparks the thread waiting for changes. The fence orders the
+     * publication before the read of the waiter, which pairs with the
+     * volatile accesses in {@link #awaitChanges()}.
+     */
+    private void wakeWaiter() {
+        VarHandle.fullFence();
+        Thread thread = (Thread) WAITER.getAcquire(this);
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
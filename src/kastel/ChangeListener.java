@@ -0,0 +1,54 @@
+package kastel;
+
+/**
+ * Receives the changes of a playlist in the order they happened, see
+ * {@link ChangeFeed}. Positions refer to the order of {@link Playlist#list()}
+ * at the time of the change, so applying the changes one after another to a
+ * copy of the list keeps the copy up to date.
+ * @author ujnaa
+ */
+public interface ChangeListener {
+    /**
+     * Handles a song that was inserted into the list.
+     *
+     * @param position the position of the song after the insertion
+     * @param song the added song
+     */
+    void added(int position, Song song);
+
+    /**
+     * Handles the removal of every song with the given id, including the
+     * current song.
+     *
+     * @param id the song id
+     * @param count amount of removed songs
+     */
+    void removed(int id, int count);
+
+    /**
+     * Handles a song that became the current song. It keeps its position.
+     *
+     * @param position the position of the song
+     * @param id the song id
+     */
+    void started(int position, int id);
+
+    /**
+     * Handles a song that was played to the end and left the list for the
+     * history. It is always preceded by {@link #started(int, int)} for the
+     * same song, even if the song started and finished within one call of
+     * {@link Playlist#play(int)}.
+     *
+     * @param position the position of the song before it left
+     * @param id the song id
+     */
+    void finished(int position, int id);
+
+    /**
+     * Handles a song that left the list without being played to the end.
+     *
+     * @param position the position of the song before it left
+     * @param id the song id
+     */
+    void skipped(int position, int id);
+}
@@ -0,0 +1,182 @@
+package kastel;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams the changes of a playlist to the output of a
+ * {@link CommandProcessor} after the "subscribe" command, one line per
+ * change:
+ * <pre>
+ * added &lt;position&gt; &lt;song as listed&gt;
+ * removed &lt;id&gt; &lt;count&gt;
+ * started &lt;position&gt; &lt;id&gt;
+ * finished &lt;position&gt; &lt;id&gt;
+ * skipped &lt;position&gt; &lt;id&gt;
+ * reset
+ * </pre>
+ * The subscription starts with the current list as additions. "reset"
+ * tells the subscriber to drop its copy because changes were lost; the
+ * complete list follows as additions again. A mirror of the playlist
+ * therefore does work in proportion to the changes instead of listing the
+ * whole playlist.
+ * <p>
+ * The processor delivers the changes caused by its own commands before it
+ * reads the next line. Changes made by other threads, such as the clock of
+ * a {@link RealtimePlaylist} or other sessions sharing the playlist, are
+ * written and flushed by a virtual thread of the stream as soon as they
+ * are published. Both hold the output lock of the stream while they write,
+ * so their lines never interleave.
+ * @author ujnaa
+ */
+public class ChangeStream implements ChangeListener {
+    private static final String ALREADY_SUBSCRIBED_MESSAGE = "Already subscribed.";
+    private static final String ADDED = "added ";
+    private static final String REMOVED = "removed ";
+    private static final String STARTED = "started ";
+    private static final String FINISHED = "finished ";
+    private static final String SKIPPED = "skipped ";
+    private static final String RESET = "reset";
+    private static final char SEPARATOR = ' ';
+    private static final String WRITER_NAME = "changes";
+
+    private final Output output;
+    private final ReentrantLock outputLock = new ReentrantLock();
+    private final StringBuilder line = new StringBuilder();
+    private ChangeFeed feed;  // null until subscribed
+    private Playlist playlist;
+    private Thread writer;
+
+    /**
+     * Creates a stream that is not subscribed yet.
+     *
+     * @param output the output receiving the change lines
+     */
+    public ChangeStream(Output output) {
+        this.output = output;
+    }
+
+    /**
+     * Blocks the delivery of changes by other threads until
+     * {@link #unlockOutput()} is called, so that the caller may write to the
+     * output. The lock is reentrant.
+     */
+    public void lockOutput() {
+        outputLock.lock();
+    }
+
+    /**
+     * Releases the lock taken by {@link #lockOutput()}.
+     */
+    public void unlockOutput() {
+        outputLock.unlock();
+    }
+
+    /**
+     * Starts following the changes of the playlist and starts the thread
+     * that writes the changes made by other threads. The caller must hold
+     * the output lock.
+     *
+     * @param playlist the playlist to follow
+     * @throws IllegalStateException if the stream already has a subscription
+     */
+    public void subscribe(Playlist playlist) {
+        if (feed != null) {
+            throw new IllegalStateException(ALREADY_SUBSCRIBED_MESSAGE);
+        }
+        ChangeFeed changes = new ChangeFeed(ChangeFeed.DEFAULT_CAPACITY, this, outputLock);
+        playlist.subscribe(changes);
+        this.feed = changes;
+        this.playlist = playlist;
+        this.writer = Thread.ofVirtual().name(WRITER_NAME).start(this::writeChanges);
+    }
+
+    /**
+     * Writes the pending changes to the output. If the feed lost changes,
+     * a reset line and the complete list follow.
+     */
+    public void deliver() {
+        if (feed == null) {
+            return;
+        }
+        outputLock.lock();
+        try {
+            feed.drain();
+            if (feed.isInvalid()) {
+                output.println(RESET);
+                playlist.resync(feed);
+                feed.drain();
+            }
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    /**
+     * Ends the subscription and stops the writing thread. Pending changes
+     * are discarded.
+     */
+    public void close() {
+        if (feed == null) {
+            return;
+        }
+        writer.interrupt();
+        playlist.unsubscribe(feed);
+    }
+
+    /**
+     * Waits for changes published by other threads and writes them to the
+     * output at once, until the stream is closed or the output fails.
+     */
+    private void writeChanges() {
+        try {
+            while (true) {
+                feed.awaitChanges();
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                outputLock.lock();
+                try {
+                    deliver();
+                    output.flush();
+                } finally {
+                    outputLock.unlock();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // the output is closed, so nobody receives further changes
+        }
+    }
+
+    @Override
+    public void added(int position, Song song) {
+        line.setLength(0);
+        output.println(song.appendListTo(line.append(ADDED).append(position).append(SEPARATOR)));
+    }
+
+    @Override
+    public void removed(int id, int count) {
+        line.setLength(0);
+        output.println(line.append(REMOVED).append(id).append(SEPARATOR).append(count));
+    }
+
+    @Override
+    public void started(int position, int id) {
+        print(STARTED, position, id);
+    }
+
+    @Override
+    public void finished(int position, int id) {
+        print(FINISHED, position, id);
+    }
+
+    @Override
+    public void skipped(int position, int id) {
+        print(SKIPPED, position, id);
+    }
+
+    private void print(String kind, int position, int id) {
+        line.setLength(0);
+        output.println(line.append(kind).append(position).append(SEPARATOR).append(id));
+    }
+}
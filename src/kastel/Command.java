@@ -2,22 +2,70 @@ package kastel;
 
 /**
  * Represents a command that can be executed by the playlist application.
+ * A command is selected by the first word of an input line, its keyword.
+ * The rest of the line is parsed exactly once and the result is handed to
+ * {@link #execute(Object, Playlist, Output)}.
+ *
+ * @param <T> type of the parsed arguments
  * @author ujnaa
  */
-public interface Command {
+public interface Command<T> {
     /**
-     * Checks if the command can handle the given user input.
+     * Gets the first word of the input lines handled by this command.
      *
-     * @param input the complete input line
-     * @return {@code true} if this command should handle the input
+     * @return the keyword
      */
-    boolean matches(String input);
+    String getKeyword();
+
+    /**
+     * Parses the arguments that follow the keyword.
+     *
+     * @param arguments the text after the keyword and the separating space,
+     *                  or {@code null} if the line consists of the keyword only
+     * @return the parsed arguments, or {@code null} if the line is not a valid
+     *         invocation of this command
+     */
+    T parse(String arguments);
 
     /**
      * Executes the command using the provided playlist.
      *
-     * @param input the complete input line
+     * @param arguments the arguments returned by {@link #parse(String)}
      * @param playlist the playlist instance to operate on
+     * @param output the output for messages of the command
+     */
+    void execute(T arguments, Playlist playlist, Output output);
+
+    /**
+     * Checks whether the command changes the playlist and therefore has to
+     * be recorded in a {@link CommandJournal}.
+     *
+     * @return {@code true} if executing the command modifies the playlist
+     */
+    default boolean isMutating() {
+        return false;
+    }
+
+    /**
+     * Adds a parsed invocation to a batch instead of executing it. Only
+     * commands whose effect a {@link PlaylistBatch} can express support
+     * batching.
+     *
+     * @param arguments the arguments returned by {@link #parse(String)}
+     * @param batch the batch receiving the operation
+     * @return {@code false} if the command cannot be part of a batch
+     * @throws IllegalArgumentException if the invocation would fail
+     */
+    default boolean addTo(T arguments, PlaylistBatch batch) {
+        return false;
+    }
+
+    /**
+     * Checks whether the command reads or writes files named by the user.
+     *
+     * @return {@code true} if the command accesses the file system
      */
-    void execute(String input, Playlist playlist);
+    default boolean accessesFiles() {
+        return false;
+    }
 }
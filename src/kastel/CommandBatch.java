@@ -0,0 +1,118 @@
+package kastel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command invocations collected between "begin" and "commit" by a
+ * {@link CommandProcessor} and applied to the playlist at once through
+ * {@link Playlist#applyBatch(PlaylistBatch)}.
+ * <p>
+ * While a batch is open, the processor adds every invocation of a command
+ * that supports batching to it instead of executing it. Other mutating
+ * commands are rejected, all remaining commands are executed immediately
+ * and see the playlist without the pending operations. On commit the
+ * collected lines are appended to the journal, if there is one, and then
+ * applied, so replaying the journal repeats them one by one with the same
+ * result.
+ * @author ujnaa
+ */
+public class CommandBatch {
+    private static final String ALREADY_OPEN_MESSAGE = "Batch already started.";
+    private static final String NOT_OPEN_MESSAGE = "No batch started.";
+    private static final String NOT_BATCHABLE_MESSAGE = "Cannot be batched: ";
+    private static final String REMOVED_MESSAGE = "Removed ";
+    private static final String REMOVED_SUFFIX = " songs.";
+    private static final long NOT_JOURNALED = 0;
+
+    private final CommandJournal journal;
+    private final List<String> lines = new ArrayList<>();  // only kept for the journal
+    private PlaylistBatch operations;  // null while no batch is open
+
+    /**
+     * Creates a closed batch.
+     *
+     * @param journal the journal receiving committed lines, or {@code null}
+     */
+    public CommandBatch(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Checks whether a batch has been started and not committed yet.
+     *
+     * @return {@code true} if invocations are collected
+     */
+    public boolean isOpen() {
+        return operations != null;
+    }
+
+    /**
+     * Starts collecting invocations.
+     *
+     * @param playlist the playlist the batch will be applied to
+     * @throws IllegalStateException if a batch is already open
+     */
+    public void begin(Playlist playlist) {
+        if (isOpen()) {
+            throw new IllegalStateException(ALREADY_OPEN_MESSAGE);
+        }
+        operations = new PlaylistBatch(playlist.getNumPriorities());
+    }
+
+    /**
+     * Adds an invocation to the open batch.
+     *
+     * @param command the command
+     * @param arguments the parsed arguments of the invocation
+     * @param line the complete input line of the invocation
+     * @param <T> type of the parsed arguments
+     * @throws IllegalArgumentException if the command cannot be batched or
+     *                                  the invocation would fail
+     */
+    public <T> void add(Command<T> command, T arguments, String line) {
+        if (!command.addTo(arguments, operations)) {
+            throw new IllegalArgumentException(NOT_BATCHABLE_MESSAGE + command.getKeyword());
+        }
+        if (journal != null) {
+            lines.add(line);
+        }
+    }
+
+    /**
+     * Journals and applies the collected invocations and closes the batch.
+     * The songs removed by all remove operations are reported together.
+     *
+     * @param playlist the playlist to apply the batch to
+     * @param output the output for the result
+     * @throws IllegalStateException if no batch is open
+     * @throws UncheckedIOException if writing the journal fails
+     */
+    public void commit(Playlist playlist, Output output) {
+        if (!isOpen()) {
+            throw new IllegalStateException(NOT_OPEN_MESSAGE);
+        }
+        long sequence = NOT_JOURNALED;
+        if (!lines.isEmpty()) {
+            try {
+                for (String line : lines) {
+                    sequence = journal.append(line);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        PlaylistBatch batch = operations;
+        operations = null;
+        lines.clear();
+        int removed = playlist.applyBatch(batch);
+        if (sequence != NOT_JOURNALED) {
+            playlist.setJournalSequence(sequence);
+        }
+        if (removed > 0) {
+            output.println(REMOVED_MESSAGE + removed + REMOVED_SUFFIX);
+        }
+    }
+}
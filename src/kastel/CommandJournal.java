@@ -0,0 +1,278 @@
+package kastel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Append-only write-ahead log of the commands that change a playlist.
+ * <p>
+ * Every entry is one UTF-8 text line consisting of an increasing sequence
+ * number, a space and the command line. Entries are collected in memory and
+ * written with a single {@link FileChannel#force(boolean)} (group commit)
+ * once a configurable amount of bytes is pending, once the oldest pending
+ * entry is older than a configurable interval, or when {@link #sync()} is
+ * called explicitly. A crash loses at most the entries of the current group.
+ * <p>
+ * Opening a journal drops an incomplete last line left behind by a crash,
+ * so that new entries always start on a line of their own.
+ * <p>
+ * Once a snapshot contains the effect of all entries, {@link #truncate()}
+ * replaces them by a single checkpoint entry that only keeps the sequence
+ * number, so the journal does not grow without bounds. Checkpoint entries
+ * are not replayed.
+ * @author ujnaa
+ */
+public class CommandJournal implements Closeable {
+    /** pending bytes after which the journal is synced by default */
+    public static final int DEFAULT_SYNC_BYTES = 1 << 16;
+    /** age of the oldest pending entry after which the journal is synced by default */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final byte LINE_END = '\n';
+    private static final byte SEPARATOR = ' ';
+    private static final int RADIX = 10;
+    private static final int INITIAL_LINE_CAPACITY = 128;
+    private static final int EXPANSION_FACTOR = 2;
+    private static final long NO_SEQUENCE = 0;
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path path;
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int syncBytes;
+    private final long syncIntervalNanos;
+    private long lastSequence;
+    private long end;  // length of the valid part of the file
+    private int pendingBytes;  // appended since the last sync
+    private long firstPendingTime;
+
+    private CommandJournal(Path path, FileChannel channel, int syncBytes,
+                           long syncIntervalMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.syncBytes = syncBytes;
+        this.syncIntervalNanos = syncIntervalMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Opens the journal at the given path, creating it if it does not exist.
+     * New entries continue the sequence of the existing ones.
+     *
+     * @param path the journal file
+     * @param syncBytes pending bytes after which the journal is synced,
+     *                  {@code 1} syncs every entry
+     * @param syncIntervalMillis maximum time an entry stays unsynced, checked
+     *                           whenever an entry is appended
+     * @return the opened journal
+     * @throws IOException if the file cannot be opened or repaired
+     */
+    public static CommandJournal open(Path path, int syncBytes, long syncIntervalMillis)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CommandJournal journal = new CommandJournal(path, channel, syncBytes,
+                syncIntervalMillis);
+        try {
+            journal.end = journal.scan(NO_SEQUENCE, null);
+            if (journal.end < channel.size()) {
+                channel.truncate(journal.end);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Gets the sequence number of the newest entry.
+     *
+     * @return the last sequence number, or {@code 0} if the journal is empty
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Passes the synced entries with a sequence number greater than the given
+     * one to the handler in journal order.
+     *
+     * @param afterSequence entries up to this sequence number are skipped
+     * @param handler receiver of the command line and its sequence number
+     * @throws IOException if reading the journal fails
+     */
+    public void replay(long afterSequence, ObjLongConsumer<String> handler) throws IOException {
+        sync();
+        scan(afterSequence, handler);
+    }
+
+    /**
+     * Appends a command line to the journal. The entry is durable after the
+     * next sync.
+     *
+     * @param line the command line, without line breaks
+     * @return the sequence number of the entry
+     * @throws IOException if writing a full group fails
+     */
+    public long append(String line) throws IOException {
+        byte[] bytes = (++lastSequence + " " + line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        if (bytes.length > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+        if (pendingBytes == 0) {
+            firstPendingTime = System.nanoTime();
+        }
+        pendingBytes += bytes.length;
+        long age = System.nanoTime() - firstPendingTime;
+        if (pendingBytes >= syncBytes || age >= syncIntervalNanos) {
+            sync();
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Writes all pending entries and forces them to the storage device.
+     *
+     * @throws IOException if writing fails
+     */
+    public void sync() throws IOException {
+        if (pendingBytes > 0) {
+            drain();
+            channel.force(false);
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * Discards all entries because a snapshot contains their effect. The
+     * file is atomically replaced by one that only holds a checkpoint entry
+     * with the last sequence number, so later entries continue the sequence
+     * and a crash leaves either the old or the new file behind. A journal
+     * without entries stays empty, as sequence numbers start at one.
+     *
+     * @throws IOException if writing the new file fails
+     */
+    public void truncate() throws IOException {
+        sync();
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        byte[] checkpoint = lastSequence == NO_SEQUENCE ? new byte[0]
+                : (lastSequence + " " + CHECKPOINT + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel replacement = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(checkpoint);
+            while (bytes.hasRemaining()) {
+                replacement.write(bytes);
+            }
+            replacement.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = checkpoint.length;
+    }
+
+    /**
+     * Syncs the pending entries and closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            end += channel.write(bytes, end);
+        }
+    }
+
+    /**
+     * Reads the complete entries from the start of the file and hands those
+     * after the given sequence number to the handler, if present. Stops at
+     * the first incomplete or malformed line.
+     *
+     * @return the length of the valid part of the file
+     */
+    private long scan(long afterSequence, ObjLongConsumer<String> handler) throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] line = new byte[INITIAL_LINE_CAPACITY];
+        long lineStart = 0;
+        long position = 0;
+        long previous = NO_SEQUENCE;
+        long sequence = 0;
+        boolean inSequence = true;
+        int length = 0;
+        while (channel.read(input, position) > 0) {
+            input.flip();
+            while (input.hasRemaining()) {
+                byte value = input.get();
+                position++;
+                if (inSequence) {
+                    int digit = Character.digit(value, RADIX);
+                    if (value == SEPARATOR && position - lineStart > 1 && sequence > previous) {
+                        inSequence = false;
+                    } else if (digit < 0) {
+                        return finishScan(lineStart, previous);
+                    } else {
+                        sequence = sequence * RADIX + digit;
+                    }
+                } else if (value == LINE_END) {
+                    if (handler != null && sequence > afterSequence) {
+                        String command = new String(line, 0, length, StandardCharsets.UTF_8);
+                        if (!command.equals(CHECKPOINT)) {
+                            handler.accept(command, sequence);
+                        }
+                    }
+                    previous = sequence;
+                    lineStart = position;
+                    sequence = 0;
+                    inSequence = true;
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        byte[] larger = new byte[line.length * EXPANSION_FACTOR];
+                        System.arraycopy(line, 0, larger, 0, length);
+                        line = larger;
+                    }
+                    line[length++] = value;
+                }
+            }
+            input.clear();
+        }
+        return finishScan(lineStart, previous);
+    }
+
+    private long finishScan(long validLength, long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+        return validLength;
+    }
+}
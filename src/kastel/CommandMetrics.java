@@ -0,0 +1,143 @@
+package kastel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts and latencies of the commands executed by a
+ * {@link CommandProcessor}, together with a report that adds the gauges of
+ * the playlist.
+ * <p>
+ * Every command keyword has a {@link Timer} of its own that the processor
+ * looks up once when the command is registered. Executions are always
+ * counted, but a clock read costs about as much as adding a song to a
+ * queue, so the latency of cheap commands is only measured for every
+ * {@value #SAMPLE_PERIOD}th execution. Commands whose measured mean is at
+ * least {@value #FULL_TIMING_NANOS} nanoseconds are measured on every
+ * execution, because the clock reads are negligible for them. Recording
+ * never allocates; the histogram of a timer is allocated when its command
+ * is executed for the first time.
+ * <p>
+ * Metrics are not thread-safe and belong to a single processor.
+ * @author ujnaa
+ */
+public class CommandMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final int SAMPLE_PERIOD = 16;
+    private static final long FULL_TIMING_NANOS = 10_000;
+
+    private final Map<String, Timer> timers = new TreeMap<>();
+    private long unknown;
+
+    /**
+     * Gets the timer of a command, creating it on first use.
+     *
+     * @param keyword the keyword of the command
+     * @return the timer
+     */
+    public Timer timer(String keyword) {
+        return timers.computeIfAbsent(keyword, key -> new Timer());
+    }
+
+    /**
+     * Counts an input line whose keyword does not belong to any command.
+     * Invalid arguments count as failed executions of the command instead.
+     */
+    public void recordUnknown() {
+        unknown++;
+    }
+
+    /**
+     * Creates a report of all executed commands and the gauges of the
+     * playlist. Durations are given in nanoseconds, queue and history sizes
+     * in songs. The count of a command includes all executions, the
+     * latencies refer to the measured ones.
+     *
+     * @param playlist the playlist whose gauges are included
+     * @return the lines of the report
+     */
+    public List<String> report(Playlist playlist) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            LatencyHistogram histogram = timer.histogram;
+            if (timer.executions == 0) {
+                continue;
+            }
+            line.setLength(0);
+            line.append("command ").append(entry.getKey())
+                    .append(" count=").append(timer.executions)
+                    .append(" failed=").append(timer.failures)
+                    .append(" measured=").append(histogram.getCount())
+                    .append(" mean_ns=").append(Math.round(histogram.getMean()));
+            for (int i = 0; i < QUANTILES.length; i++) {
+                line.append(' ').append(QUANTILE_NAMES[i]).append("_ns=")
+                        .append(histogram.getValueAtQuantile(QUANTILES[i]));
+            }
+            line.append(" max_ns=").append(histogram.getMax());
+            lines.add(line.toString());
+        }
+        lines.add("unknown count=" + unknown);
+        for (int prio = 0; prio < playlist.getNumPriorities(); prio++) {
+            lines.add("queue " + prio + " size=" + playlist.getQueueSize(prio)
+                    + " capacity=" + playlist.getQueueCapacity(prio));
+        }
+        lines.add("history size=" + playlist.historySize()
+                + " capacity=" + playlist.getHistoryCapacity());
+        return lines;
+    }
+
+    /**
+     * Execution count, failure count and latency histogram of a single
+     * command.
+     */
+    public static final class Timer {
+        private LatencyHistogram histogram;
+        private long executions;
+        private long failures;
+        private int untilMeasured = 1;
+
+        private Timer() {
+        }
+
+        /**
+         * Counts an execution of the command that is about to start and
+         * decides whether its latency is measured.
+         *
+         * @return {@code true} if the latency has to be passed to
+         *         {@link #measured(long)}
+         */
+        public boolean started() {
+            executions++;
+            if (--untilMeasured > 0) {
+                return false;
+            }
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+            }
+            untilMeasured = histogram.getMean() >= FULL_TIMING_NANOS ? 1 : SAMPLE_PERIOD;
+            return true;
+        }
+
+        /**
+         * Records the latency of an execution chosen by {@link #started()}.
+         *
+         * @param nanos duration of the execution in nanoseconds
+         */
+        public void measured(long nanos) {
+            histogram.record(nanos);
+        }
+
+        /**
+         * Counts an execution that reported an error or whose arguments were
+         * rejected.
+         */
+        public void failed() {
+            failures++;
+        }
+    }
+}
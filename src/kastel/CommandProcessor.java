@@ -1,36 +1,142 @@
 package kastel;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Reads user input and delegates execution to the registered commands.
+ * <p>
+ * If a {@link CommandJournal} is attached, every valid invocation of a
+ * mutating command is appended to it before it is executed. The journal is
+ * synced before pending output is flushed, so every reported result of a
+ * command that waited for further input is durable. Mutating commands that
+ * read files are not journaled, because replaying them may read different
+ * content; a {@link JournalCheckpoint} saves the complete state after them
+ * instead.
+ * <p>
+ * Between "begin" and "commit" the invocations of mutating commands are
+ * collected in a {@link CommandBatch} and applied at once, see
+ * {@link Playlist#applyBatch(PlaylistBatch)}.
+ * <p>
+ * After "subscribe" the changes of the playlist are written to the output
+ * as a {@link ChangeStream}. The changes of the processor's own commands are
+ * delivered before the next line is read, changes made by other threads as
+ * soon as they happen. The processor holds the output lock of the stream
+ * while it executes a line or writes pending output.
+ * <p>
+ * The processor measures the latency of every command, see
+ * {@link CommandMetrics}, and can export the metrics to a file
+ * periodically.
  * @author ujnaa
  */
 public class CommandProcessor {
     private static final String UNKNOWN_COMMAND_MESSAGE = "Unknown command.";
+    private static final char KEYWORD_SEPARATOR = ' ';
+    private static final String METRICS_ERROR_MESSAGE = "Cannot write metrics ";
+    private static final long NOT_JOURNALED = 0;
     private final Playlist playlist;
-    private final Scanner scanner;
-    private final Command[] commands;
+    private final LineSource input;
+    private final Output output;
+    private final CommandJournal journal;
+    private final JournalCheckpoint checkpoint;  // null without a journal
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final CommandBatch batch;
+    private final ChangeStream changes;
+    private final Map<String, Registration> commands;
+    private MetricsExporter exporter;
 
     /**
-     * Creates a new processor with the given playlist and input scanner.
+     * Creates a new processor with the given playlist, input source and
+     * output.
      *
      * @param playlist the playlist to operate on
-     * @param scanner  the scanner to read user input from
+     * @param input    the source to read user input from
+     * @param output   the output for command results and errors
      */
-    public CommandProcessor(Playlist playlist, Scanner scanner) {
+    public CommandProcessor(Playlist playlist, LineSource input, Output output) {
+        this(playlist, input, output, null, null);
+    }
+
+    /**
+     * Creates a new processor that records mutating commands in a journal.
+     *
+     * @param playlist the playlist to operate on
+     * @param input    the source to read user input from
+     * @param output   the output for command results and errors
+     * @param journal  the journal receiving mutating commands, or {@code null}
+     * @param snapshot the snapshot restored before the journal is replayed,
+     *                 required if there is a journal
+     */
+    public CommandProcessor(Playlist playlist, LineSource input, Output output,
+                            CommandJournal journal, Path snapshot) {
         this.playlist = playlist;
-        this.scanner = scanner;
+        this.input = input;
+        this.output = output;
+        this.journal = journal;
+        this.checkpoint = journal == null ? null : new JournalCheckpoint(journal, snapshot);
+        this.batch = new CommandBatch(journal);
+        this.changes = new ChangeStream(output);
         this.commands = createCommands();
     }
 
     /**
-     * Returns the supported command list.
+     * Removes the commands that access files, so that clients of a server
+     * cannot read or write files of the host. Their keywords are reported as
+     * unknown commands afterwards.
+     */
+    public void disableFileCommands() {
+        commands.values().removeIf(registration -> registration.command.accessesFiles());
+    }
+
+    /**
+     * Gets the metrics of the commands executed so far.
+     *
+     * @return the metrics
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the metrics report to a file whenever a command completes and
+     * the interval has passed since the last report, and once more when
+     * {@link #run()} ends.
+     *
+     * @param path the file receiving the reports
+     * @param intervalMillis minimum time between two reports
+     */
+    public void exportMetrics(Path path, long intervalMillis) {
+        exporter = new MetricsExporter(path, intervalMillis);
+    }
+
+    /**
+     * Executes the journal entries that are newer than the state of the
+     * playlist, for example after loading a snapshot. Their output is
+     * discarded.
+     *
+     * @param journal the journal to replay
+     * @param playlist the playlist to bring up to date
+     * @throws IOException if reading the journal fails
+     */
+    public static void replay(CommandJournal journal, Playlist playlist) throws IOException {
+        CommandProcessor processor = new CommandProcessor(playlist, null, Output.discarding());
+        journal.replay(playlist.getJournalSequence(), (line, sequence) -> {
+            processor.process(line);
+            playlist.setJournalSequence(sequence);
+        });
+    }
+
+    /**
+     * Returns the supported commands indexed by their keyword.
      *
-     * @return array of commands
+     * @return map from keyword to command and its timer
      */
-    private static Command[] createCommands() {
-        return new Command[]{
+    private Map<String, Registration> createCommands() {
+        Map<String, Registration> commands = new HashMap<>();
+        for (Command<?> command : new Command<?>[]{
             new AddCommand(),
             new NextCommand(),
             new PlayCommand(),
@@ -39,35 +145,231 @@ public class CommandProcessor {
             new ListCommand(),
             new SkipCommand(),
             new HistoryCommand(),
-            new QuitCommand()
-        };
+            new PositionCommand(),
+            new EtaCommand(),
+            new DurationCommand(),
+            new CompactCommand(),
+            new QuitCommand(),
+            new ImportCommand(),
+            new SaveCommand(checkpoint),
+            new LoadCommand(),
+            new StatsCommand(metrics),
+            new BeginCommand(batch),
+            new CommitCommand(batch),
+            new SubscribeCommand(changes)
+        }) {
+            commands.put(command.getKeyword(),
+                    new Registration(command, metrics.timer(command.getKeyword())));
+        }
+        return commands;
     }
 
     /**
-     * Starts reading commands from the user until the quit command is issued.
+     * Starts reading commands from the user until the quit command is issued
+     * or the input ends. Pending output is flushed whenever the processor
+     * would wait for input and when the loop ends.
+     *
+     * @throws UncheckedIOException if reading the input or writing the
+     *                              journal fails
      */
     public void run() {
-        boolean running = true;
-        while (running) {
-            String input = scanner.nextLine().trim();
-            boolean handled = false;
-            for (Command cmd : commands) {
-                if (cmd.matches(input)) {
+        try {
+            boolean running = true;
+            while (running) {
+                String line = nextLine();
+                changes.lockOutput();
+                try {
+                    running = line != null && process(line);
+                } finally {
+                    changes.unlockOutput();
+                }
+            }
+        } finally {
+            changes.lockOutput();
+            try {
+                changes.deliver();
+                sync();
+                if (exporter != null) {
                     try {
-                        cmd.execute(input, playlist);
-                    } catch (RuntimeException e) {
-                        System.out.println(e.getMessage());
-                    }
-                    handled = true;
-                    if (cmd instanceof QuitCommand) {
-                        running = false;
+                        exporter.export(metrics, playlist);
+                    } catch (IOException e) {
+                        output.println(METRICS_ERROR_MESSAGE + e.getMessage());
+                        output.flush();
                     }
-                    break;
                 }
+            } finally {
+                changes.unlockOutput();
+                changes.close();
             }
-            if (!handled) {
-                System.out.println(UNKNOWN_COMMAND_MESSAGE);
+        }
+    }
+
+    /**
+     * Executes a single input line.
+     *
+     * @return {@code false} if the line was the quit command
+     */
+    private boolean process(String line) {
+        String input = line.trim();
+        int separator = input.indexOf(KEYWORD_SEPARATOR);
+        String keyword = separator < 0 ? input : input.substring(0, separator);
+        String arguments = separator < 0 ? null : input.substring(separator + 1);
+        Registration registration = commands.get(keyword);
+        if (registration == null) {
+            metrics.recordUnknown();
+            output.println(UNKNOWN_COMMAND_MESSAGE);
+            return true;
+        }
+        if (!dispatch(registration.command, registration.timer, input, arguments)) {
+            output.println(UNKNOWN_COMMAND_MESSAGE);
+            return true;
+        }
+        return !(registration.command instanceof QuitCommand);
+    }
+
+    private String nextLine() {
+        changes.lockOutput();
+        try {
+            changes.deliver();
+            if (!input.hasBufferedInput()) {
+                sync();
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            changes.unlockOutput();
+        }
+        try {
+            return input.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes the journal durable and then writes the pending output.
+     */
+    private void sync() {
+        if (journal != null) {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Parses the arguments with the given command, records valid invocations
+     * of mutating commands in the journal and executes them, or adds them to
+     * the open batch. The time from
+     * parsing to the end of the execution is recorded by the timer if it
+     * chooses to measure the execution.
+     *
+     * @return {@code false} if the command rejected the arguments
+     */
+    private <T> boolean dispatch(Command<T> command, CommandMetrics.Timer timer, String line,
+                                 String arguments) {
+        boolean measured = timer.started();
+        long start = measured ? System.nanoTime() : 0;
+        T parsed;
+        try {
+            parsed = command.parse(arguments);
+        } catch (RuntimeException e) {
+            output.println(String.valueOf(e.getMessage()));
+            timer.failed();
+            completed(timer, measured, start);
+            return true;
+        }
+        if (parsed == null) {
+            timer.failed();
+            completed(timer, measured, start);
+            return false;
+        }
+        if (batch.isOpen() && command.isMutating()) {
+            try {
+                batch.add(command, parsed, line);
+            } catch (RuntimeException e) {
+                output.println(String.valueOf(e.getMessage()));
+                timer.failed();
+            }
+            completed(timer, measured, start);
+            return true;
+        }
+        long sequence = record(command, line);
+        try {
+            command.execute(parsed, playlist, output);
+        } catch (RuntimeException e) {
+            output.println(String.valueOf(e.getMessage()));
+            timer.failed();
+        }
+        if (sequence != NOT_JOURNALED) {
+            playlist.setJournalSequence(sequence);
+        } else if (checkpoint != null && command.isMutating()) {
+            writeCheckpoint();
+        }
+        completed(timer, measured, start);
+        return true;
+    }
+
+    /**
+     * Saves the state after a mutating command that was not journaled.
+     */
+    private void writeCheckpoint() {
+        try {
+            checkpoint.write(playlist);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the latency of a measured command and exports the metrics if
+     * they are due.
+     */
+    private void completed(CommandMetrics.Timer timer, boolean measured, long start) {
+        if (!measured) {
+            return;
+        }
+        long now = System.nanoTime();
+        timer.measured(now - start);
+        if (exporter != null) {
+            try {
+                exporter.exportIfDue(metrics, playlist, now);
+            } catch (IOException e) {
+                output.println(METRICS_ERROR_MESSAGE + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends the line to the journal if the command changes the playlist
+     * and does not read files.
+     *
+     * @return the sequence number of the entry, or {@link #NOT_JOURNALED}
+     */
+    private long record(Command<?> command, String line) {
+        if (journal == null || !command.isMutating() || command.accessesFiles()) {
+            return NOT_JOURNALED;
+        }
+        try {
+            return journal.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A registered command together with the timer of its keyword.
+     */
+    private static final class Registration {
+        private final Command<?> command;
+        private final CommandMetrics.Timer timer;
+
+        Registration(Command<?> command, CommandMetrics.Timer timer) {
+            this.command = command;
+            this.timer = timer;
         }
     }
 }
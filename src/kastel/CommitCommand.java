@@ -0,0 +1,26 @@
+package kastel;
+
+/**
+ * Handles the "commit" command that applies the commands collected since
+ * "begin", see {@link CommandBatch#commit(Playlist, Output)}.
+ * @author ujnaa
+ */
+public class CommitCommand extends KeywordCommand {
+    private static final String COMMAND = "commit";
+    private final CommandBatch batch;
+
+    /**
+     * Creates the command.
+     *
+     * @param batch the batch of the processor executing the command
+     */
+    public CommitCommand(CommandBatch batch) {
+        super(COMMAND);
+        this.batch = batch;
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        batch.commit(playlist, output);
+    }
+}
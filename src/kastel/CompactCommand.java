@@ -0,0 +1,41 @@
+package kastel;
+
+/**
+ * Handles the "compact" command that releases the unused memory of the
+ * playlist, see {@link Playlist#trimToSize()}, and prints the size and the
+ * capacity before and after for every queue and the history.
+ * @author ujnaa
+ */
+public class CompactCommand extends KeywordCommand {
+    private static final String COMMAND = "compact";
+    private static final String QUEUE_PREFIX = "queue ";
+    private static final String HISTORY_PREFIX = "history";
+    private static final String SIZE_PREFIX = " size=";
+    private static final String CAPACITY_PREFIX = " capacity=";
+    private static final String CHANGE_SEPARATOR = "->";
+
+    /**
+     * Creates the command.
+     */
+    public CompactCommand() {
+        super(COMMAND);
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        int[] before = new int[playlist.getNumPriorities()];
+        for (int prio = 0; prio < before.length; prio++) {
+            before[prio] = playlist.getQueueCapacity(prio);
+        }
+        int historyBefore = playlist.getHistoryCapacity();
+        playlist.trimToSize();
+        for (int prio = 0; prio < before.length; prio++) {
+            output.println(QUEUE_PREFIX + prio + SIZE_PREFIX + playlist.getQueueSize(prio)
+                    + CAPACITY_PREFIX + before[prio] + CHANGE_SEPARATOR
+                    + playlist.getQueueCapacity(prio));
+        }
+        output.println(HISTORY_PREFIX + SIZE_PREFIX + playlist.historySize()
+                + CAPACITY_PREFIX + historyBefore + CHANGE_SEPARATOR
+                + playlist.getHistoryCapacity());
+    }
+}
@@ -0,0 +1,99 @@
+package kastel;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Playlist that may be filled by several producer threads while another
+ * thread drives playback.
+ * <p>
+ * Every priority level is guarded by a lock of its own. Adding a song only
+ * takes the lock of its level, so producers of different priorities never
+ * wait for each other, and occupied levels are marked with atomic bit
+ * operations. Every other operation takes the locks of all levels in
+ * ascending order and therefore sees the queues in a consistent state:
+ * playback always starts the first song of the highest priority that has
+ * been completely added at that moment.
+ * <p>
+ * While a subscriber follows the changes, adding a song takes all locks as
+ * well, because the position it is published with depends on the other
+ * levels.
+ * @author ujnaa
+ */
+public class ConcurrentPlaylist extends Playlist {
+    private final ReentrantLock[] stripes;  // stripes[priority]
+
+    /**
+     * Creates an empty playlist with six priority queues and an empty history.
+     */
+    public ConcurrentPlaylist() {
+        this(DEFAULT_NUM_PRIORITIES);
+    }
+
+    /**
+     * Creates an empty playlist with the given amount of priority queues and
+     * an empty history.
+     *
+     * @param numPriorities number of priority levels, at most
+     *                      {@link PriorityScheduler#MAX_PRIORITIES}
+     * @throws IllegalArgumentException if the amount is not supported
+     */
+    public ConcurrentPlaylist(int numPriorities) {
+        super(new PriorityScheduler(numPriorities, true), numPriorities);
+        stripes = new ReentrantLock[numPriorities];
+        for (int prio = 0; prio < numPriorities; prio++) {
+            stripes[prio] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Takes the lock of the given priority level only, unless a subscriber
+     * follows the changes. Subscribing takes all locks, so whether there is
+     * a subscriber cannot change while either lock is held.
+     */
+    @Override
+    void lockQueue(int priority) {
+        ReentrantLock stripe = stripes[priority];
+        stripe.lock();
+        while (hasSubscriber()) {
+            stripe.unlock();
+            lockState();
+            if (hasSubscriber()) {
+                return;
+            }
+            unlockState();
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases the locks taken by {@link #lockQueue(int)}.
+     */
+    @Override
+    void unlockQueue(int priority) {
+        if (hasSubscriber()) {
+            unlockState();
+        } else {
+            stripes[priority].unlock();
+        }
+    }
+
+    /**
+     * Takes the locks of all priority levels in ascending order.
+     */
+    @Override
+    void lockState() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases the locks of all priority levels.
+     */
+    @Override
+    void unlockState() {
+        for (int prio = stripes.length - 1; prio >= 0; prio--) {
+            stripes[prio].unlock();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package kastel;
+
+/**
+ * Handles the "duration" command that prints the time left to play, see
+ * {@link Playlist#remainingPlayTime()}.
+ * @author ujnaa
+ */
+public class DurationCommand extends KeywordCommand {
+    private static final String COMMAND = "duration";
+    private static final String DURATION_MESSAGE = "Remaining ";
+    private static final String SECONDS_SUFFIX = " seconds.";
+
+    /**
+     * Creates the command.
+     */
+    public DurationCommand() {
+        super(COMMAND);
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        output.println(DURATION_MESSAGE + playlist.remainingPlayTime() + SECONDS_SUFFIX);
+    }
+}
@@ -0,0 +1,31 @@
+package kastel;
+
+/**
+ * Handles the "eta" command that prints the time until the first song with
+ * a given id starts playing, see {@link Playlist#timeUntil(int)}. Nothing
+ * is printed if no such song is queued or playing.
+ * @author ujnaa
+ */
+public class EtaCommand implements Command<Integer> {
+    private static final String KEYWORD = "eta";
+    private static final String ETA_MESSAGE = "Starts in ";
+    private static final String SECONDS_SUFFIX = " seconds.";
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
+    @Override
+    public Integer parse(String arguments) {
+        return arguments == null ? null : Integer.parseInt(arguments.trim());
+    }
+
+    @Override
+    public void execute(Integer id, Playlist playlist, Output output) {
+        long seconds = playlist.timeUntil(id);
+        if (seconds != Playlist.NOT_SCHEDULED) {
+            output.println(ETA_MESSAGE + seconds + SECONDS_SUFFIX);
+        }
+    }
+}
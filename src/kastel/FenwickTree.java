@@ -0,0 +1,136 @@
+package kastel;
+
+/**
+ * Binary indexed tree over a fixed number of slots that supports point
+ * updates, prefix sums and searching the first slot at which a prefix sum
+ * reaches a target, each in logarithmic time.
+ * @author ujnaa
+ */
+public class FenwickTree {
+    private final long[] tree;  // 1-based, tree[i] covers (i - lowbit(i), i]
+    private final int highestBit;
+
+    /**
+     * Creates a tree over the given values.
+     *
+     * @param values initial value of every slot
+     */
+    public FenwickTree(int[] values) {
+        tree = new long[values.length + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        highestBit = values.length == 0 ? 0 : Integer.highestOneBit(values.length);
+    }
+
+    /**
+     * Adds a delta to a single slot.
+     *
+     * @param index the slot
+     * @param delta value to add
+     */
+    public void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Adds deltas to the consecutive slots {@code [from, from + count)}. Only
+     * the nodes inside the range and the ancestors of its last slot change,
+     * so this takes {@code O(count + log n)} time instead of
+     * {@code O(count * log n)} for adding the deltas one by one.
+     *
+     * @param from the first slot
+     * @param deltas values to add, {@code deltas[offset + k]} to slot
+     *               {@code from + k}
+     * @param offset index of the delta of the first slot
+     * @param count amount of slots
+     */
+    public void addRange(int from, long[] deltas, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+        long[] prefix = new long[count + 1];  // prefix[k] = sum of the first k deltas
+        for (int k = 0; k < count; k++) {
+            prefix[k + 1] = prefix[k] + deltas[offset + k];
+        }
+        int end = from + count;
+        for (int i = from + 1; i <= end; i++) {
+            tree[i] += prefix[i - from] - prefix[Math.max(i - (i & -i), from) - from];
+        }
+        for (int i = end + (end & -end); i < tree.length; i += i & -i) {
+            tree[i] += prefix[count] - prefix[Math.max(i - (i & -i), from) - from];
+        }
+    }
+
+    /**
+     * Sums the slots {@code [0, end)}.
+     *
+     * @param end exclusive end slot
+     * @return the prefix sum
+     */
+    public long prefixSum(int end) {
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the slots {@code [from, to)}.
+     *
+     * @param from inclusive start slot
+     * @param to exclusive end slot
+     * @return the range sum
+     */
+    public long sum(int from, int to) {
+        return prefixSum(to) - prefixSum(from);
+    }
+
+    /**
+     * Finds the smallest slot {@code p} with {@code prefixSum(p + 1) >= target}.
+     * All slots must hold non-negative values.
+     *
+     * @param target the prefix sum to reach
+     * @return the slot, or the number of slots if the total is smaller
+     */
+    public int lowerBound(long target) {
+        int position = 0;
+        long remaining = target;
+        for (int step = highestBit; step > 0; step >>>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Finds the smallest slot {@code p} such that the slots {@code [0, p]}
+     * hold {@code target} zeros. All slots must hold {@code 0} or {@code 1},
+     * so the tree counts marked slots and the search selects unmarked ones.
+     *
+     * @param target the amount of zeros to reach, at least {@code 1}
+     * @return the slot, or the number of slots if there are fewer zeros
+     */
+    public int lowerBoundOfZeros(long target) {
+        int position = 0;
+        long remaining = target;
+        for (int step = highestBit; step > 0; step >>>= 1) {
+            int next = position + step;
+            if (next < tree.length && step - tree[next] < remaining) {
+                position = next;
+                remaining -= step - tree[next];
+            }
+        }
+        return position;
+    }
+}
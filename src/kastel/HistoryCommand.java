@@ -1,20 +1,57 @@
 package kastel;
 
 /**
- * Handles the "history" command that prints played songs.
+ * Handles the "history" command that prints played songs. Without
+ * arguments the complete history is printed; {@code history <offset>
+ * <limit>} prints a page of it, {@code history artist <name>} and
+ * {@code history id <id>} print the songs of an artist or with an id.
  * @author ujnaa
  */
-public class HistoryCommand implements Command {
-    private static final String COMMAND = "history";
+public class HistoryCommand implements Command<HistoryCommand.Query> {
+    private static final String KEYWORD = "history";
+    private static final String ARTIST_FILTER = "artist ";
+    private static final String ID_FILTER = "id ";
+
     @Override
-    public boolean matches(String input) {
-        return input.equals(COMMAND);
+    public String getKeyword() {
+        return KEYWORD;
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        for (String s : playlist.history()) {
-            System.out.println(s);
+    public Query parse(String arguments) {
+        if (arguments == null) {
+            return (playlist, visitor) -> playlist.forEachHistory(Page.ALL.getFrom(),
+                    Page.ALL.getTo(), visitor);
+        }
+        String query = arguments.trim();
+        if (query.startsWith(ARTIST_FILTER)) {
+            String artist = query.substring(ARTIST_FILTER.length()).trim();
+            return (playlist, visitor) -> playlist.forEachHistoryByArtist(artist, visitor);
         }
+        if (query.startsWith(ID_FILTER)) {
+            int id = Integer.parseInt(query.substring(ID_FILTER.length()).trim());
+            return (playlist, visitor) -> playlist.forEachHistoryById(id, visitor);
+        }
+        Page page = Page.parse(query);
+        return page == null ? null : (playlist, visitor) -> playlist.forEachHistory(
+                page.getFrom(), page.getTo(), visitor);
+    }
+
+    @Override
+    public void execute(Query query, Playlist playlist, Output output) {
+        query.run(playlist, new SongLineWriter(output));
+    }
+
+    /**
+     * Selection of played songs parsed from the arguments of the command.
+     */
+    public interface Query {
+        /**
+         * Passes the selected songs of the playlist to the visitor.
+         *
+         * @param playlist the playlist
+         * @param visitor receiver of the songs
+         */
+        void run(Playlist playlist, SongVisitor visitor);
     }
 }
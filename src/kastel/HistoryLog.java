@@ -0,0 +1,273 @@
+package kastel;
+
+import java.util.Arrays;
+
+/**
+ * Append-only log of played songs stored in columns of primitive values.
+ * Artists and titles are kept once in a {@link StringDictionary} and every
+ * entry only refers to their codes, so the log does not keep any
+ * {@link Song} alive.
+ * <p>
+ * The columns are split into fixed-size chunks. Growing the log allocates a
+ * new chunk and never copies existing entries. Only the first chunk starts
+ * small and doubles until it reaches the chunk size, so short logs stay
+ * small. {@link #trimToSize()} cuts the last chunk to its entries, which
+ * then doubles the same way when the log grows again.
+ * <p>
+ * Entries can be looked up by artist and by song id through
+ * {@link PostingLists}. The lists are created by the first lookup and
+ * brought up to date by every later one, so appending, which happens for
+ * every played song, never pays for them.
+ * @author ujnaa
+ */
+public class HistoryLog {
+    /** column holding the song ids */
+    public static final int ID_COLUMN = 0;
+    /** column holding the dictionary codes of the artists */
+    public static final int ARTIST_COLUMN = 1;
+    /** column holding the dictionary codes of the titles */
+    public static final int TITLE_COLUMN = 2;
+    /** column holding the song lengths */
+    public static final int LENGTH_COLUMN = 3;
+    /** number of entries per chunk */
+    public static final int CHUNK_SIZE = 1 << 12;
+    private static final int COLUMNS = 4;
+    private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNKS = 4;
+    private static final int INITIAL_CHUNK_CAPACITY = 16;
+    private static final int EXPANSION_FACTOR = 2;
+
+    private final StringDictionary strings;
+    private int[][][] columns;  // columns[column][chunk][offset]
+    private int size;
+    private PostingLists artistEntries;  // by artist code, null until the first lookup
+    private PostingLists idEntries;
+    private int indexed;  // entries contained in the posting lists
+
+    /**
+     * Creates an empty history log.
+     */
+    public HistoryLog() {
+        this(new StringDictionary(), 0);
+    }
+
+    /**
+     * Creates a log of the given size whose entries are filled in afterwards
+     * through {@link #chunk(int, int)}.
+     *
+     * @param strings dictionary the artist and title codes refer to
+     * @param size amount of entries
+     */
+    public HistoryLog(StringDictionary strings, int size) {
+        this.strings = strings;
+        int chunks = Math.max(INITIAL_CHUNKS, (size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        columns = new int[COLUMNS][chunks][];
+        for (int chunk = 0; chunk < chunkCount(size); chunk++) {
+            allocateChunk(chunk, CHUNK_SIZE);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of logged songs.
+     *
+     * @return the log size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of entries the allocated chunks can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        int capacity = 0;
+        for (int[] chunk : columns[ID_COLUMN]) {
+            if (chunk != null) {
+                capacity += chunk.length;
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Gets the dictionary of artists and titles.
+     *
+     * @return the dictionary
+     */
+    public StringDictionary getStrings() {
+        return strings;
+    }
+
+    /**
+     * Gets the amount of chunks holding the entries.
+     *
+     * @return the number of used chunks
+     */
+    public int chunkCount() {
+        return chunkCount(size);
+    }
+
+    /**
+     * Gives direct access to a chunk of a column. Entry {@code i} is stored at
+     * index {@code i % CHUNK_SIZE} of chunk {@code i / CHUNK_SIZE}. The first
+     * chunk may be shorter than {@link #CHUNK_SIZE} but always holds all of
+     * its entries.
+     *
+     * @param column one of the column constants
+     * @param chunk index of the chunk
+     * @return the chunk array
+     */
+    public int[] chunk(int column, int chunk) {
+        return columns[column][chunk];
+    }
+
+    /**
+     * Appends a played song to the log.
+     *
+     * @param song the played song
+     */
+    public void append(Song song) {
+        int chunk = size >>> CHUNK_BITS;
+        int offset = size & CHUNK_MASK;
+        if (offset == 0) {
+            addChunk(chunk);
+        } else if (offset == columns[ID_COLUMN][chunk].length) {
+            growChunk(chunk);
+        }
+        columns[ID_COLUMN][chunk][offset] = song.getId();
+        columns[ARTIST_COLUMN][chunk][offset] = strings.encode(song.getArtist());
+        columns[TITLE_COLUMN][chunk][offset] = strings.encode(song.getTitle());
+        columns[LENGTH_COLUMN][chunk][offset] = song.getLength();
+        size++;
+    }
+
+    /**
+     * Releases the unused part of the storage: the chunk directory and the
+     * last chunk are cut to the logged entries and the posting lists are
+     * dropped until the next lookup rebuilds them.
+     */
+    public void trimToSize() {
+        int chunks = Math.max(INITIAL_CHUNKS, chunkCount(size));
+        int used = size & CHUNK_MASK;
+        for (int column = 0; column < COLUMNS; column++) {
+            int[][] directory = new int[chunks][];
+            System.arraycopy(columns[column], 0, directory, 0, chunkCount(size));
+            if (used > 0) {
+                int last = size >>> CHUNK_BITS;
+                directory[last] = Arrays.copyOf(directory[last], used);
+            }
+            columns[column] = directory;
+        }
+        artistEntries = null;
+        idEntries = null;
+        indexed = 0;
+    }
+
+    /**
+     * Passes the entries {@code [from, to)} to the visitor in order of
+     * playtime.
+     *
+     * @param from index of the first entry
+     * @param to index after the last entry, at most {@link #size()}
+     * @param visitor receiver of the entries
+     */
+    public void forEach(int from, int to, SongVisitor visitor) {
+        for (int i = from; i < to; i++) {
+            visit(i, visitor);
+        }
+    }
+
+    /**
+     * Passes all entries of the given artist to the visitor in order of
+     * playtime.
+     *
+     * @param artist the artist
+     * @param visitor receiver of the entries
+     */
+    public void forEachByArtist(String artist, SongVisitor visitor) {
+        int code = strings.find(artist);
+        if (code != StringDictionary.NOT_FOUND) {
+            updatePostings();
+            forEachPosting(artistEntries, code, visitor);
+        }
+    }
+
+    /**
+     * Passes all entries of the given song id to the visitor in order of
+     * playtime.
+     *
+     * @param id the song id
+     * @param visitor receiver of the entries
+     */
+    public void forEachById(int id, SongVisitor visitor) {
+        updatePostings();
+        forEachPosting(idEntries, id, visitor);
+    }
+
+    private void forEachPosting(PostingLists postings, int key, SongVisitor visitor) {
+        int[] entries = postings.entries(key);
+        int count = postings.count(key);
+        for (int i = 0; i < count; i++) {
+            visit(entries[i], visitor);
+        }
+    }
+
+    /**
+     * Adds the entries appended since the last lookup to the posting lists.
+     */
+    private void updatePostings() {
+        if (artistEntries == null) {
+            artistEntries = new PostingLists();
+            idEntries = new PostingLists();
+        }
+        for (; indexed < size; indexed++) {
+            int chunk = indexed >>> CHUNK_BITS;
+            int offset = indexed & CHUNK_MASK;
+            artistEntries.add(columns[ARTIST_COLUMN][chunk][offset], indexed);
+            idEntries.add(columns[ID_COLUMN][chunk][offset], indexed);
+        }
+    }
+
+    private void visit(int entry, SongVisitor visitor) {
+        int chunk = entry >>> CHUNK_BITS;
+        int offset = entry & CHUNK_MASK;
+        visitor.visit(columns[ID_COLUMN][chunk][offset],
+                strings.decode(columns[ARTIST_COLUMN][chunk][offset]),
+                strings.decode(columns[TITLE_COLUMN][chunk][offset]),
+                columns[LENGTH_COLUMN][chunk][offset]);
+    }
+
+    private static int chunkCount(int entries) {
+        return (entries + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+    }
+
+    private void addChunk(int chunk) {
+        if (chunk == columns[ID_COLUMN].length) {
+            int newLength = chunk * EXPANSION_FACTOR;
+            for (int column = 0; column < COLUMNS; column++) {
+                int[][] directory = new int[newLength][];
+                System.arraycopy(columns[column], 0, directory, 0, chunk);
+                columns[column] = directory;
+            }
+        }
+        allocateChunk(chunk, chunk == 0 ? INITIAL_CHUNK_CAPACITY : CHUNK_SIZE);
+    }
+
+    private void growChunk(int chunk) {
+        for (int column = 0; column < COLUMNS; column++) {
+            int[] old = columns[column][chunk];
+            columns[column][chunk] = Arrays.copyOf(old,
+                    Math.min(old.length * EXPANSION_FACTOR, CHUNK_SIZE));
+        }
+    }
+
+    private void allocateChunk(int chunk, int capacity) {
+        for (int column = 0; column < COLUMNS; column++) {
+            columns[column][chunk] = new int[capacity];
+        }
+    }
+}
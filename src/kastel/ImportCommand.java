@@ -0,0 +1,64 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Handles the "import" command that loads a song catalog file into the
+ * playlist.
+ * @author ujnaa
+ */
+public class ImportCommand implements Command<Path> {
+    private static final String KEYWORD = "import";
+    private static final String IMPORTED_MESSAGE = "Imported ";
+    private static final String IMPORTED_SUFFIX = " songs.";
+    private static final String SKIPPED_MESSAGE = "Skipped ";
+    private static final String SKIPPED_SUFFIX = " invalid lines.";
+    private static final String READ_ERROR_MESSAGE = "Cannot read catalog ";
+    private static final int NONE_SKIPPED = 0;
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
+    @Override
+    public Path parse(String arguments) {
+        return arguments == null ? null : Path.of(arguments.trim());
+    }
+
+    @Override
+    public void execute(Path path, Playlist playlist, Output output) {
+        importCatalog(path, playlist, output);
+    }
+
+    /**
+     * Imports the catalog and reports the result.
+     *
+     * @param path the catalog file
+     * @param playlist the playlist receiving the songs
+     * @param output the output for the result message
+     */
+    public static void importCatalog(Path path, Playlist playlist, Output output) {
+        CatalogImporter.Result result;
+        try {
+            result = CatalogImporter.importFile(path, playlist);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(READ_ERROR_MESSAGE + path, e);
+        }
+        output.println(IMPORTED_MESSAGE + result.getImported() + IMPORTED_SUFFIX);
+        if (result.getSkipped() > NONE_SKIPPED) {
+            output.println(SKIPPED_MESSAGE + result.getSkipped() + SKIPPED_SUFFIX);
+        }
+    }
+
+    @Override
+    public boolean isMutating() {
+        return true;
+    }
+
+    @Override
+    public boolean accessesFiles() {
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the snapshot that crash recovery starts from and truncates the
+ * {@link CommandJournal} whose entries it contains.
+ * <p>
+ * Commands that read files, such as "import" and "load", are not written to
+ * the journal, because executing them again later may read different
+ * content. Instead the complete state is checkpointed after they ran. A
+ * "save" to the recovery snapshot also covers all entries, so the journal
+ * is truncated afterwards as well.
+ * @author ujnaa
+ */
+public class JournalCheckpoint {
+    private final CommandJournal journal;
+    private final Path snapshot;
+
+    /**
+     * Creates a checkpoint for the given journal.
+     *
+     * @param journal the journal to truncate
+     * @param snapshot the snapshot restored before the journal is replayed
+     */
+    public JournalCheckpoint(CommandJournal journal, Path snapshot) {
+        this.journal = journal;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Writes the state of the playlist, which must contain the effect of all
+     * journal entries, to the recovery snapshot and truncates the journal.
+     *
+     * @param playlist the playlist to save
+     * @throws IOException if writing the snapshot or the journal fails
+     */
+    public void write(Playlist playlist) throws IOException {
+        journal.sync();
+        playlist.lockState();
+        try {
+            playlist.setJournalSequence(journal.getLastSequence());
+            PlaylistSnapshot.save(playlist, snapshot);
+        } finally {
+            playlist.unlockState();
+        }
+        journal.truncate();
+    }
+
+    /**
+     * Truncates the journal after the playlist was saved to the given file,
+     * if that file is the recovery snapshot and contains all entries.
+     *
+     * @param playlist the saved playlist
+     * @param path the file the playlist was saved to
+     * @throws IOException if writing the journal fails
+     */
+    public void saved(Playlist playlist, Path path) throws IOException {
+        if (path.toAbsolutePath().normalize().equals(snapshot.toAbsolutePath().normalize())
+                && playlist.getJournalSequence() == journal.getLastSequence()) {
+            journal.truncate();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package kastel;
+
+/**
+ * Base class for commands that consist of their keyword only.
+ * @author ujnaa
+ */
+public abstract class KeywordCommand implements Command<String> {
+    private final String keyword;
+
+    /**
+     * Creates a command for the given keyword.
+     *
+     * @param keyword the complete input line of the command
+     */
+    protected KeywordCommand(String keyword) {
+        this.keyword = keyword;
+    }
+
+    @Override
+    public String getKeyword() {
+        return keyword;
+    }
+
+    @Override
+    public String parse(String arguments) {
+        return arguments == null ? keyword : null;
+    }
+}
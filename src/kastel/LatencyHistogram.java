@@ -0,0 +1,116 @@
+package kastel;
+
+/**
+ * Histogram of durations with log-linear buckets in the style of
+ * HdrHistogram.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} buckets of equal
+ * width, so a recorded value is known up to a relative error of
+ * {@code 1/32}. Durations below {@value #SUB_BUCKETS} nanoseconds are
+ * counted exactly, durations of {@code 2^36} nanoseconds (about a minute)
+ * and more share the last bucket. Recording computes the bucket with a few
+ * bit operations and increments a counter; it never allocates.
+ * <p>
+ * The histogram is not thread-safe.
+ * @author ujnaa
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 36;
+    private static final int BUCKETS = index((1L << MAX_MAGNITUDE) - 1) + 1;
+    private static final int LONG_BITS = Long.SIZE - 1;
+    private static final int HALF_BUCKET_SHIFT = 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[Math.min(index(value), BUCKETS - 1)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Gets the amount of recorded durations.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the mean of the recorded durations.
+     *
+     * @return the mean in nanoseconds, or {@code 0} if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Gets the largest recorded duration.
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the duration below which the given fraction of the recorded
+     * durations lies, rounded to the middle of its bucket.
+     *
+     * @param quantile the fraction between {@code 0} and {@code 1}
+     * @return the duration in nanoseconds, or {@code 0} if nothing was
+     *         recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(middle(bucket), max);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Computes the bucket of a value. Values below {@link #SUB_BUCKETS} map
+     * to themselves; otherwise the position of the leading one selects a
+     * group of {@link #SUB_BUCKETS} buckets and the bits following it select
+     * the bucket inside the group.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = LONG_BITS - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Computes the value in the middle of a bucket, the inverse of
+     * {@link #index(long)}.
+     */
+    private static long middle(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + ((1L << shift) >>> HALF_BUCKET_SHIFT);
+    }
+}
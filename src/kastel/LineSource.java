@@ -0,0 +1,27 @@
+package kastel;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of input lines for the {@link CommandProcessor}.
+ * @author ujnaa
+ */
+public interface LineSource extends Closeable {
+    /**
+     * Reads the next line.
+     *
+     * @return the line without line terminator, or {@code null} at the end of
+     *         the input
+     * @throws IOException if reading fails
+     */
+    String readLine() throws IOException;
+
+    /**
+     * Checks whether a line can be read without waiting for more input.
+     *
+     * @return {@code true} if input is already available
+     * @throws IOException if checking fails
+     */
+    boolean hasBufferedInput() throws IOException;
+}
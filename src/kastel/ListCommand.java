@@ -1,20 +1,25 @@
 package kastel;
 
 /**
- * Handles the "list" command that prints the playlist.
+ * Handles the "list" command that prints the playlist, either completely
+ * or a page of it given as {@code list <offset> <limit>}.
  * @author ujnaa
  */
-public class ListCommand implements Command {
-    private static final String COMMAND = "list";
+public class ListCommand implements Command<Page> {
+    private static final String KEYWORD = "list";
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
     @Override
-    public boolean matches(String input) {
-        return input.equals(COMMAND);
+    public Page parse(String arguments) {
+        return arguments == null ? Page.ALL : Page.parse(arguments);
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        for (String s : playlist.list()) {
-            System.out.println(s);
-        }
+    public void execute(Page page, Playlist playlist, Output output) {
+        playlist.forEachListed(page.getFrom(), page.getTo(), new SongLineWriter(output));
     }
 }
@@ -0,0 +1,43 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Handles the "load" command that replaces the playlist with a snapshot
+ * written by the "save" command.
+ * @author ujnaa
+ */
+public class LoadCommand implements Command<Path> {
+    private static final String KEYWORD = "load";
+    private static final String READ_ERROR_MESSAGE = "Cannot read snapshot ";
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
+    @Override
+    public Path parse(String arguments) {
+        return arguments == null ? null : Path.of(arguments.trim());
+    }
+
+    @Override
+    public void execute(Path path, Playlist playlist, Output output) {
+        try {
+            PlaylistSnapshot.load(path, playlist);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(READ_ERROR_MESSAGE + path, e);
+        }
+    }
+
+    @Override
+    public boolean isMutating() {
+        return true;
+    }
+
+    @Override
+    public boolean accessesFiles() {
+        return true;
+    }
+}
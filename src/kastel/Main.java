@@ -1,6 +1,9 @@
 package kastel;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Entry point of the application. Initializes the playlist and starts
@@ -9,20 +12,180 @@ import java.util.Scanner;
  * @author ujnaa
  */
 public final class Main {
+    private static final String PRIORITIES_FLAG = "--priorities";
+    private static final String OUTPUT_BATCH_FLAG = "--output-batch";
+    private static final String IMPORT_FLAG = "--import";
+    private static final String SNAPSHOT_FLAG = "--snapshot";
+    private static final String JOURNAL_FLAG = "--journal";
+    private static final String JOURNAL_SYNC_BYTES_FLAG = "--journal-sync-bytes";
+    private static final String JOURNAL_SYNC_MILLIS_FLAG = "--journal-sync-millis";
+    private static final String SERVER_FLAG = "--server";
+    private static final String SHARED_PLAYLIST_FLAG = "--shared-playlist";
+    private static final String REALTIME_FLAG = "--realtime";
+    private static final String METRICS_FLAG = "--metrics";
+    private static final String METRICS_INTERVAL_FLAG = "--metrics-interval-millis";
+    private static final int NO_PORT = -1;
+    private static final long NO_TICK = -1;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
 
     private Main() {
         //
     }
     /**
      * Starts the command processor loop.
+     * <p>
+     * Supported options: {@code --priorities <n>} sets the number of
+     * priority levels of the playlist, {@code --output-batch <lines>} the
+     * amount of buffered output lines and {@code --import <path>} loads a
+     * song catalog before the first command. Output is flushed after every
+     * line when attached to a terminal. The catalog is only imported if no
+     * snapshot was restored, because a snapshot already contains it.
+     * <p>
+     * For crash recovery, {@code --snapshot <path>} restores a snapshot
+     * written by the "save" command if the file exists and
+     * {@code --journal <path>} replays the newer entries of a command
+     * journal on top of it. Afterwards all mutating commands are appended to
+     * the journal, which is synced once {@code --journal-sync-bytes <n>}
+     * bytes are pending or the oldest entry is
+     * {@code --journal-sync-millis <ms>} old, and whenever the processor
+     * waits for input. Commands that read files and a "save" to the snapshot
+     * path write the snapshot and truncate the journal instead, see
+     * {@link JournalCheckpoint}. Without {@code --snapshot}, a journal keeps
+     * its snapshot next to it, named like the journal with the suffix
+     * {@code .snapshot}.
+     * <p>
+     * With {@code --server <port>} the application does not read standard
+     * input but serves an independent playlist to every client connecting to
+     * the port on the loopback interface, see {@link PlaylistServer}. With
+     * {@code --shared-playlist true} all clients operate on one playlist
+     * instead and may follow each other's changes with "subscribe".
+     * <p>
+     * With {@code --realtime <tickMillis>} playback advances with the wall
+     * clock, ending songs at most one tick late, see
+     * {@link RealtimePlaylist}. The play command still fast-forwards. Time
+     * that passed in real time is not written to the journal.
+     * <p>
+     * With {@code --metrics <path>} the report of the "stats" command is
+     * written to the file every {@code --metrics-interval-millis <ms>}
+     * while commands are executed, and when the application ends.
      *
-     * @param args ignored command line arguments
+     * @param args command line arguments
+     * @throws IOException if the input cannot be closed, the journal cannot
+     *                     be opened or replayed or the server port cannot be
+     *                     opened
      */
-    public static void main(String[] args) {
-        Playlist playlist = new Playlist();
-        Scanner scanner = new Scanner(System.in);
-        CommandProcessor processor = new CommandProcessor(playlist, scanner);
-        processor.run();
-        scanner.close();
+    public static void main(String[] args) throws IOException {
+        int numPriorities = Playlist.DEFAULT_NUM_PRIORITIES;
+        int batchLines = System.console() != null ? 1 : Output.DEFAULT_BATCH_LINES;
+        String catalog = null;
+        String snapshot = null;
+        String journalPath = null;
+        int syncBytes = CommandJournal.DEFAULT_SYNC_BYTES;
+        long syncMillis = CommandJournal.DEFAULT_SYNC_INTERVAL_MILLIS;
+        int serverPort = NO_PORT;
+        boolean sharePlaylist = false;
+        long tickMillis = NO_TICK;
+        String metricsPath = null;
+        long metricsMillis = MetricsExporter.DEFAULT_INTERVAL_MILLIS;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals(PRIORITIES_FLAG)) {
+                numPriorities = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals(OUTPUT_BATCH_FLAG)) {
+                batchLines = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals(IMPORT_FLAG)) {
+                catalog = args[i + 1];
+            } else if (args[i].equals(SNAPSHOT_FLAG)) {
+                snapshot = args[i + 1];
+            } else if (args[i].equals(JOURNAL_FLAG)) {
+                journalPath = args[i + 1];
+            } else if (args[i].equals(JOURNAL_SYNC_BYTES_FLAG)) {
+                syncBytes = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals(JOURNAL_SYNC_MILLIS_FLAG)) {
+                syncMillis = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals(SERVER_FLAG)) {
+                serverPort = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals(SHARED_PLAYLIST_FLAG)) {
+                sharePlaylist = Boolean.parseBoolean(args[i + 1]);
+            } else if (args[i].equals(REALTIME_FLAG)) {
+                tickMillis = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals(METRICS_FLAG)) {
+                metricsPath = args[i + 1];
+            } else if (args[i].equals(METRICS_INTERVAL_FLAG)) {
+                metricsMillis = Long.parseLong(args[i + 1]);
+            }
+        }
+        if (journalPath != null && snapshot == null) {
+            snapshot = journalPath + SNAPSHOT_SUFFIX;
+        }
+        TimingWheel wheel = tickMillis == NO_TICK ? null : new TimingWheel(tickMillis);
+        if (serverPort != NO_PORT) {
+            try (PlaylistServer server = new PlaylistServer(serverPort, numPriorities, wheel,
+                    sharePlaylist)) {
+                server.serve();
+            }
+            return;
+        }
+        Playlist playlist = wheel == null ? new Playlist(numPriorities)
+                : new RealtimePlaylist(wheel, numPriorities);
+        Output output = Output.toStandardOutput(batchLines, Output.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        Path snapshotPath = snapshot == null ? null : Path.of(snapshot);
+        boolean restored = snapshotPath != null && restoreSnapshot(snapshotPath, playlist, output);
+        try (CommandJournal journal = journalPath == null ? null
+                : CommandJournal.open(Path.of(journalPath), syncBytes, syncMillis)) {
+            if (journal != null) {
+                CommandProcessor.replay(journal, playlist);
+            }
+            if (catalog != null && !restored) {
+                importCatalog(Path.of(catalog), playlist, output,
+                        journal == null ? null : new JournalCheckpoint(journal, snapshotPath));
+            }
+            try (LineSource input = ReaderLineSource.fromStream(System.in,
+                    Charset.defaultCharset(), ReaderLineSource.DEFAULT_BUFFER_SIZE)) {
+                CommandProcessor processor = new CommandProcessor(playlist, input, output,
+                        journal, snapshotPath);
+                if (metricsPath != null) {
+                    processor.exportMetrics(Path.of(metricsPath), metricsMillis);
+                }
+                processor.run();
+            }
+        }
+    }
+
+    /**
+     * Restores the playlist from the snapshot if the file exists.
+     *
+     * @return {@code true} if the state of the playlist was replaced
+     */
+    private static boolean restoreSnapshot(Path path, Playlist playlist, Output output) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            PlaylistSnapshot.load(path, playlist);
+            return true;
+        } catch (IOException e) {
+            output.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Imports the catalog given on the command line. With a journal the
+     * imported songs are checkpointed, so that the next start restores them
+     * from the snapshot instead of importing the catalog again.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private static void importCatalog(Path catalog, Playlist playlist, Output output,
+                                      JournalCheckpoint checkpoint) throws IOException {
+        try {
+            ImportCommand.importCatalog(catalog, playlist, output);
+        } catch (IllegalArgumentException e) {
+            output.println(e.getMessage());
+            return;
+        }
+        if (checkpoint != null) {
+            checkpoint.write(playlist);
+        }
     }
 }
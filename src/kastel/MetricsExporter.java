@@ -0,0 +1,71 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the report of {@link CommandMetrics} to a file.
+ * <p>
+ * Like the flushing of {@link Output}, the interval is checked whenever a
+ * command has been executed, so no thread of its own is needed. The report
+ * is written to a temporary file that then replaces the target, so readers
+ * never see a partial report.
+ * @author ujnaa
+ */
+public class MetricsExporter {
+    /** interval between two reports used by default */
+    public static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path path;
+    private final Path temporary;
+    private final long intervalNanos;
+    private long nextExport;
+
+    /**
+     * Creates an exporter that writes its first report once the interval
+     * has passed.
+     *
+     * @param path the file receiving the reports
+     * @param intervalMillis minimum time between two reports
+     */
+    public MetricsExporter(Path path, long intervalMillis) {
+        this.path = path;
+        this.temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nextExport = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Writes a report if the interval has passed since the last one.
+     *
+     * @param metrics the metrics to report
+     * @param playlist the playlist whose gauges are reported
+     * @param now the current {@link System#nanoTime()}
+     * @throws IOException if the report cannot be written
+     */
+    public void exportIfDue(CommandMetrics metrics, Playlist playlist, long now)
+            throws IOException {
+        if (now - nextExport >= 0) {
+            export(metrics, playlist);
+        }
+    }
+
+    /**
+     * Writes a report immediately.
+     *
+     * @param metrics the metrics to report
+     * @param playlist the playlist whose gauges are reported
+     * @throws IOException if the report cannot be written
+     */
+    public void export(CommandMetrics metrics, Playlist playlist) throws IOException {
+        nextExport = System.nanoTime() + intervalNanos;
+        Files.write(temporary, metrics.report(playlist), StandardCharsets.UTF_8);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
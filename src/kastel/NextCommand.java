@@ -4,30 +4,32 @@ package kastel;
  * Handles the "next" command that schedules a song as the next track.
  * @author ujnaa
  */
-public class NextCommand implements Command {
-    private static final String PREFIX = "next ";
-    private static final String INVALID_FORMAT_MESSAGE = "Invalid next command format";
+public class NextCommand implements Command<Song> {
+    private static final String KEYWORD = "next";
 
     @Override
-    public boolean matches(String input) {
-        if (!input.startsWith(PREFIX)) {
-            return false;
-        }
-        String songDef = input.substring(PREFIX.length());
-        try {
-            SongParser.parseWithoutPriority(songDef);
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+    public String getKeyword() {
+        return KEYWORD;
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        if (!matches(input)) {
-            throw new IllegalArgumentException(INVALID_FORMAT_MESSAGE);
-        }
-        String songDef = input.substring(PREFIX.length());
-        playlist.addNext(SongParser.parseWithoutPriority(songDef));
+    public Song parse(String arguments) {
+        return arguments == null ? null : SongParser.tryParseWithoutPriority(arguments);
+    }
+
+    @Override
+    public void execute(Song song, Playlist playlist, Output output) {
+        playlist.addNext(song);
+    }
+
+    @Override
+    public boolean addTo(Song song, PlaylistBatch batch) {
+        batch.addNext(song);
+        return true;
+    }
+
+    @Override
+    public boolean isMutating() {
+        return true;
     }
 }
@@ -0,0 +1,163 @@
+package kastel;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Line oriented output of the application backed by a large buffer.
+ * Buffered lines are written out once a configurable amount of lines is
+ * pending, once the oldest pending line is older than a configurable
+ * interval, or when {@link #flush()} is called explicitly.
+ * @author ujnaa
+ */
+public class Output {
+    /** pending lines after which the output is flushed by default */
+    public static final int DEFAULT_BATCH_LINES = 8192;
+    /** age of the oldest pending line after which the output is flushed by default */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private final int batchLines;
+    private final long flushIntervalNanos;
+    private char[] chars;
+    private int pendingLines;
+    private long firstPendingTime;
+
+    /**
+     * Creates an output writing to the given writer.
+     *
+     * @param writer the target of the output
+     * @param batchLines pending lines after which the output is flushed,
+     *                   {@code 1} flushes every line
+     * @param flushIntervalMillis maximum time a line stays buffered, checked
+     *                            whenever a line is written
+     */
+    public Output(Writer writer, int batchLines, long flushIntervalMillis) {
+        this.writer = writer;
+        this.batchLines = batchLines;
+        this.flushIntervalNanos = flushIntervalMillis * NANOS_PER_MILLI;
+        this.chars = new char[0];
+    }
+
+    /**
+     * Creates an output writing to standard output, bypassing the
+     * synchronized {@link System#out} stream.
+     *
+     * @param batchLines pending lines after which the output is flushed
+     * @param flushIntervalMillis maximum time a line stays buffered
+     * @return the new output
+     */
+    public static Output toStandardOutput(int batchLines, long flushIntervalMillis) {
+        return toStream(new FileOutputStream(FileDescriptor.out), System.out.charset(),
+                batchLines, flushIntervalMillis);
+    }
+
+    /**
+     * Creates an output writing encoded text to the given stream.
+     *
+     * @param stream the target stream
+     * @param charset encoding of the text
+     * @param batchLines pending lines after which the output is flushed
+     * @param flushIntervalMillis maximum time a line stays buffered
+     * @return the new output
+     */
+    public static Output toStream(OutputStream stream, Charset charset, int batchLines,
+                                  long flushIntervalMillis) {
+        return toStream(stream, charset, batchLines, flushIntervalMillis, BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an output writing encoded text to the given stream through a
+     * buffer of the given size.
+     *
+     * @param stream the target stream
+     * @param charset encoding of the text
+     * @param batchLines pending lines after which the output is flushed
+     * @param flushIntervalMillis maximum time a line stays buffered
+     * @param bufferSize size of the buffer in characters
+     * @return the new output
+     */
+    public static Output toStream(OutputStream stream, Charset charset, int batchLines,
+                                  long flushIntervalMillis, int bufferSize) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, charset), bufferSize);
+        return new Output(writer, batchLines, flushIntervalMillis);
+    }
+
+    /**
+     * Creates an output that drops all lines, used when commands are
+     * executed again whose results were already reported.
+     *
+     * @return the new output
+     */
+    public static Output discarding() {
+        return new Output(Writer.nullWriter(), DEFAULT_BATCH_LINES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Writes a line of text.
+     *
+     * @param line the text without line separator
+     */
+    public void println(String line) {
+        try {
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lineWritten();
+    }
+
+    /**
+     * Writes the content of the builder as a line without creating a string.
+     *
+     * @param line the text without line separator
+     */
+    public void println(StringBuilder line) {
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[line.capacity()];
+        }
+        line.getChars(0, length, chars, 0);
+        try {
+            writer.write(chars, 0, length);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lineWritten();
+    }
+
+    /**
+     * Writes all pending lines to the target.
+     */
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pendingLines = 0;
+    }
+
+    private void lineWritten() {
+        long now = System.nanoTime();
+        if (pendingLines == 0) {
+            firstPendingTime = now;
+        }
+        pendingLines++;
+        if (pendingLines >= batchLines || now - firstPendingTime >= flushIntervalNanos) {
+            flush();
+        }
+    }
+}
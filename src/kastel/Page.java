@@ -0,0 +1,92 @@
+package kastel;
+
+/**
+ * Range of entries requested by a paged query, given by the position of
+ * the first entry and the maximum amount of entries.
+ * @author ujnaa
+ */
+public final class Page {
+    /** page that covers every entry */
+    public static final Page ALL = new Page(0, Integer.MAX_VALUE);
+    private static final String INVALID_PAGE_MSG = "Invalid page: ";
+    private static final char LAST_WHITESPACE = ' ';
+    private static final int RADIX = 10;
+
+    private final int offset;
+    private final int limit;
+
+    /**
+     * Creates a page.
+     *
+     * @param offset position of the first entry
+     * @param limit maximum amount of entries
+     * @throws IllegalArgumentException if a value is negative
+     */
+    public Page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException(INVALID_PAGE_MSG + offset + " " + limit);
+        }
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses a page given as {@code <offset> <limit>}. The text is scanned
+     * once in place, the values may be separated and surrounded by any
+     * whitespace as defined by {@link String#trim()}.
+     *
+     * @param arguments the text to parse
+     * @return the page, or {@code null} if the text does not consist of two
+     *         values
+     * @throws IllegalArgumentException if a value is not a number or
+     *                                  negative
+     */
+    public static Page parse(String arguments) {
+        int length = arguments.length();
+        int offsetStart = skipWhitespace(arguments, 0);
+        int offsetEnd = skipValue(arguments, offsetStart);
+        int limitStart = skipWhitespace(arguments, offsetEnd);
+        int limitEnd = skipValue(arguments, limitStart);
+        if (offsetStart == offsetEnd || limitStart == limitEnd
+                || skipWhitespace(arguments, limitEnd) != length) {
+            return null;
+        }
+        return new Page(Integer.parseInt(arguments, offsetStart, offsetEnd, RADIX),
+                Integer.parseInt(arguments, limitStart, limitEnd, RADIX));
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) <= LAST_WHITESPACE) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipValue(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) > LAST_WHITESPACE) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Gets the position of the first entry.
+     *
+     * @return the inclusive start of the page
+     */
+    public int getFrom() {
+        return offset;
+    }
+
+    /**
+     * Gets the position after the last entry.
+     *
+     * @return the exclusive end of the page, at most
+     *         {@link Integer#MAX_VALUE}
+     */
+    public int getTo() {
+        return (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    }
+}
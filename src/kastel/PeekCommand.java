@@ -4,18 +4,23 @@ package kastel;
  * Handles the "peek" command that prints the currently playing song.
  * @author ujnaa
  */
-public class PeekCommand implements Command {
+public class PeekCommand extends KeywordCommand {
     private static final String COMMAND = "peek";
-    @Override
-    public boolean matches(String input) {
-        return input.equals(COMMAND);
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Creates the command.
+     */
+    public PeekCommand() {
+        super(COMMAND);
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
+    public void execute(String arguments, Playlist playlist, Output output) {
         Song s = playlist.peek();
         if (s != null) {
-            System.out.println(s.toPeekString());
+            line.setLength(0);
+            output.println(s.appendPeekTo(line));
         }
     }
 }
@@ -4,17 +4,26 @@ package kastel;
  * Handles the "play" command that advances playback for a given time.
  * @author ujnaa
  */
-public class PlayCommand implements Command {
-    private static final String PLAY_PREFIX = "play ";
-    private static final int PREFIX_LENGTH = 5;
+public class PlayCommand implements Command<Integer> {
+    private static final String KEYWORD = "play";
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
     @Override
-    public boolean matches(String input) {
-        return input.startsWith(PLAY_PREFIX);
+    public Integer parse(String arguments) {
+        return arguments == null ? null : Integer.parseInt(arguments.trim());
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        int seconds = Integer.parseInt(input.substring(PREFIX_LENGTH).trim());
+    public void execute(Integer seconds, Playlist playlist, Output output) {
         playlist.play(seconds);
     }
+
+    @Override
+    public boolean isMutating() {
+        return true;
+    }
 }
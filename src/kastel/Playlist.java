@@ -1,35 +1,72 @@
 package kastel;
 
+import java.util.Iterator;
+
 /**
  * Manages all songs, queues and playback operations of the application.
+ * <p>
+ * A subscriber can follow the changes of the playlist through a
+ * {@link ChangeFeed}, see {@link #subscribe(ChangeFeed)}. Without a
+ * subscriber no change is recorded.
+ * <p>
+ * Every public operation runs between {@link #lockState()} and
+ * {@link #unlockState()}, or between {@link #lockQueue(int)} and
+ * {@link #unlockQueue(int)} when it only adds to one queue. These hooks do
+ * nothing here; thread-safe subclasses override them instead of the
+ * operations.
  * @author ujnaa
  */
 public class Playlist {
-    /** initial capacity for queues and history */
-    private static final int INITIAL_CAPACITY = 10;
-    /** number of priority levels used by the playlist */
-    private static final int NUM_PRIORITIES = 6;
+    /** number of priority levels used by default */
+    public static final int DEFAULT_NUM_PRIORITIES = 6;
+    /** result of {@link #positionOf(int)} for songs that are not listed */
+    public static final int NOT_LISTED = -1;
+    /** result of {@link #timeUntil(int)} for songs that will not be played */
+    public static final long NOT_SCHEDULED = Long.MIN_VALUE;
     private static final int DEFAULT_PRIORITY = 0;
     private static final int NO_TIME_LEFT = 0;
-    private static final String INVALID_PRIORITY_MSG = "Invalid priority: ";
-    private static final int EXPANSION_FACTOR = 2;
+    static final String INVALID_PRIORITY_MSG = "Invalid priority: ";
     private static final int INITIAL_INDEX = 0;
-    private static final int SHIFT = 1;
+    private static final int NONE = PriorityScheduler.NONE;
+    private static final String SUBSCRIBED_MSG = "Already subscribed.";
 
-    private Song[][] queues;  // queues[priority][songs]
-    private int[] sizes;     // sizes[priority] = current queue size
+    private final SongQueue[] queues;  // queues[priority], null until first used
+    private final PriorityScheduler scheduler;
+    private HistoryLog history;
     private Song currentSong;
-    private Song[] history;
-    private int historySize;
+    private long journalSequence;  // last applied entry of a CommandJournal
+    private ChangeFeed feed;  // first feed of the subscribers, null without one
 
     /**
      * Creates an empty playlist with six priority queues and an empty history.
      */
     public Playlist() {
-        queues = new Song[NUM_PRIORITIES][INITIAL_CAPACITY];
-        sizes = new int[NUM_PRIORITIES];
-        history = new Song[INITIAL_CAPACITY];
-        historySize = INITIAL_INDEX;
+        this(DEFAULT_NUM_PRIORITIES);
+    }
+
+    /**
+     * Creates an empty playlist with the given amount of priority queues and
+     * an empty history.
+     *
+     * @param numPriorities number of priority levels, at most
+     *                      {@link PriorityScheduler#MAX_PRIORITIES}
+     * @throws IllegalArgumentException if the amount is not supported
+     */
+    public Playlist(int numPriorities) {
+        this(new PriorityScheduler(numPriorities), numPriorities);
+    }
+
+    /**
+     * Creates an empty playlist that tracks occupied levels with the given
+     * scheduler.
+     *
+     * @param scheduler scheduler for the priority levels
+     * @param numPriorities number of priority levels
+     */
+    Playlist(PriorityScheduler scheduler, int numPriorities) {
+        this.scheduler = scheduler;
+        queues = new SongQueue[numPriorities];
+        history = new HistoryLog();
     }
 
     /**
@@ -40,20 +77,203 @@ public class Playlist {
      */
     public void addSong(Song song) {
         int priority = song.getPriority();
-        if (priority < DEFAULT_PRIORITY || priority >= queues.length) {
+        if (!isValidPriority(priority)) {
             throw new IllegalArgumentException(INVALID_PRIORITY_MSG + priority);
         }
-        if (sizes[priority] == queues[priority].length) {
-            queues[priority] = expandArray(queues[priority]);
+        lockQueue(priority);
+        try {
+            queueFor(priority).addLast(song);
+            scheduler.mark(priority);
+            if (feed != null) {
+                feed.added(listedBefore(priority) + queues[priority].size() - 1, song);
+            }
+        } finally {
+            unlockQueue(priority);
         }
-        queues[priority][sizes[priority]++] = song;
     }
 
-    private void addToHistory(Song song) {
-        if (historySize == history.length) {
-            history = expandArray(history);
+    /**
+     * Adds the first {@code count} songs of the array like {@link #addSong(Song)}
+     * in array order. The songs are grouped by priority first, so every queue
+     * receives its part of the batch at once and grows at most once.
+     *
+     * @param songs the songs to enqueue
+     * @param count amount of songs to take from the array
+     * @throws IllegalArgumentException if a song has an invalid priority, in
+     *                                  which case no song is added
+     */
+    public void addAll(Song[] songs, int count) {
+        lockState();
+        try {
+            addAll(songs, INITIAL_INDEX, count);
+        } finally {
+            unlockState();
         }
-        history[historySize++] = song;
+    }
+
+    /**
+     * Adds the songs {@code songs[from, from + count)} like
+     * {@link #addAll(Song[], int)}.
+     */
+    private void addAll(Song[] songs, int from, int count) {
+        int[] starts = new int[queues.length + 1];
+        for (int i = from; i < from + count; i++) {
+            int priority = songs[i].getPriority();
+            if (!isValidPriority(priority)) {
+                throw new IllegalArgumentException(INVALID_PRIORITY_MSG + priority);
+            }
+            starts[priority + 1]++;
+        }
+        for (int prio = 0; prio < queues.length; prio++) {
+            starts[prio + 1] += starts[prio];
+        }
+        Song[] byPriority = new Song[count];
+        int[] next = starts.clone();
+        for (int i = from; i < from + count; i++) {
+            byPriority[next[songs[i].getPriority()]++] = songs[i];
+        }
+        for (int prio = 0; prio < queues.length; prio++) {
+            int added = starts[prio + 1] - starts[prio];
+            if (added > 0) {
+                queueFor(prio).appendAll(byPriority, starts[prio], added);
+                scheduler.mark(prio);
+                publishAdded(prio, byPriority, starts[prio], added);
+            }
+        }
+    }
+
+    /**
+     * Applies the operations of a batch in order. Consecutive additions are
+     * added at once like {@link #addAll(Song[], int)}, consecutive songs
+     * scheduled next reserve their space in the queue at once, and the
+     * songs removed by all remove operations are counted together.
+     *
+     * @param batch the operations to apply
+     * @return the amount of songs removed by the remove operations
+     */
+    public int applyBatch(PlaylistBatch batch) {
+        lockState();
+        try {
+            Song[] songs = batch.songs();
+            int removed = INITIAL_INDEX;
+            int start = INITIAL_INDEX;
+            while (start < batch.size()) {
+                byte kind = batch.kind(start);
+                int end = start + 1;
+                while (end < batch.size() && batch.kind(end) == kind) {
+                    end++;
+                }
+                if (kind == PlaylistBatch.ADD) {
+                    addAll(songs, start, end - start);
+                } else if (kind == PlaylistBatch.NEXT) {
+                    SongQueue queue = queueFor(DEFAULT_PRIORITY);
+                    queue.ensureCapacity(end - start);
+                    for (int i = start; i < end; i++) {
+                        queue.addFirst(songs[i]);
+                        if (feed != null) {
+                            feed.added(listedBefore(DEFAULT_PRIORITY), songs[i]);
+                        }
+                    }
+                    scheduler.mark(DEFAULT_PRIORITY);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        removed += removeById(batch.id(i));
+                    }
+                }
+                start = end;
+            }
+            return removed;
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the number of priority levels of this playlist.
+     *
+     * @return the number of priority levels
+     */
+    public int getNumPriorities() {
+        return queues.length;
+    }
+
+    /**
+     * Gets the number of songs waiting in the queue of the given priority.
+     *
+     * @param priority a valid priority
+     * @return the queue size
+     */
+    public int getQueueSize(int priority) {
+        lockState();
+        try {
+            SongQueue queue = queues[priority];
+            return queue == null ? 0 : queue.size();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the number of songs the queue of the given priority can hold
+     * without growing. Queues of unused priorities have no storage.
+     *
+     * @param priority a valid priority
+     * @return the queue capacity
+     */
+    public int getQueueCapacity(int priority) {
+        lockState();
+        try {
+            SongQueue queue = queues[priority];
+            return queue == null ? 0 : queue.capacity();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the number of songs the history can hold without allocating.
+     *
+     * @return the history capacity
+     */
+    public int getHistoryCapacity() {
+        lockState();
+        try {
+            return history.capacity();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Releases the memory the queues and the history do not use. Every queue
+     * shrinks to the smallest capacity that holds its songs and the storage
+     * of empty queues is dropped.
+     */
+    public void trimToSize() {
+        lockState();
+        try {
+            for (int prio = 0; prio < queues.length; prio++) {
+                SongQueue queue = queues[prio];
+                if (queue != null && queue.isEmpty()) {
+                    queues[prio] = null;
+                } else if (queue != null) {
+                    queue.trimToSize();
+                }
+            }
+            history.trimToSize();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Checks whether songs with the given priority can be added.
+     *
+     * @param priority the priority to check
+     * @return {@code true} if the playlist has a queue for the priority
+     */
+    public boolean isValidPriority(int priority) {
+        return priority >= DEFAULT_PRIORITY && priority < queues.length;
     }
 
     /**
@@ -62,11 +282,87 @@ public class Playlist {
      * @return array of formatted song strings
      */
     public String[] history() {
-        String[] result = new String[historySize];
-        for (int i = 0; i < historySize; i++) {
-            result[i] = history[i].toListString();
+        lockState();
+        try {
+            String[] result = new String[history.size()];
+            history.forEach(INITIAL_INDEX, result.length, new SongVisitor() {
+                private int index = INITIAL_INDEX;
+
+                @Override
+                public void visit(int id, String artist, String title, int length) {
+                    result[index++] = Song.toListString(id, artist, title, length);
+                }
+            });
+            return result;
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the number of songs that have been played so far.
+     *
+     * @return the history size
+     */
+    public int historySize() {
+        lockState();
+        try {
+            return history.size();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Passes the played songs {@code [from, to)} in order of playtime to the
+     * visitor without collecting them first. Indices from
+     * {@link #historySize()} on are ignored.
+     *
+     * @param from index of the first played song
+     * @param to index after the last played song
+     * @param visitor receiver of the songs
+     */
+    public void forEachHistory(int from, int to, SongVisitor visitor) {
+        lockState();
+        try {
+            history.forEach(from, Math.min(to, history.size()), visitor);
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Passes the played songs of the given artist in order of playtime to
+     * the visitor. The time taken depends on the amount of matching songs,
+     * not on the size of the history.
+     *
+     * @param artist the artist
+     * @param visitor receiver of the songs
+     */
+    public void forEachHistoryByArtist(String artist, SongVisitor visitor) {
+        lockState();
+        try {
+            history.forEachByArtist(artist, visitor);
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Passes the played songs with the given id in order of playtime to the
+     * visitor. The time taken depends on the amount of matching songs, not
+     * on the size of the history.
+     *
+     * @param id the song id
+     * @param visitor receiver of the songs
+     */
+    public void forEachHistoryById(int id, SongVisitor visitor) {
+        lockState();
+        try {
+            history.forEachById(id, visitor);
+        } finally {
+            unlockState();
         }
-        return result;
     }
 
     /**
@@ -75,16 +371,17 @@ public class Playlist {
      * @return the current song or the next queued song, or {@code null} if none
      */
     public Song peek() {
-        if (currentSong != null && currentSong.getRemainingTime() > 0) {
-            return currentSong;
-        }
-
-        for (int prio = 0; prio < NUM_PRIORITIES; prio++) {
-            if (sizes[prio] > 0) {
-                return queues[prio][INITIAL_INDEX];
+        lockState();
+        try {
+            if (currentSong != null && currentSong.getRemainingTime() > 0) {
+                return currentSong;
             }
+
+            int prio = scheduler.next();
+            return prio == NONE ? null : queues[prio].peekFirst();
+        } finally {
+            unlockState();
         }
-        return null;
     }
 
     /**
@@ -95,30 +392,29 @@ public class Playlist {
      * @return removed amount
      */
     public int removeById(int id) {
-        int amountRemoved = INITIAL_INDEX;
+        lockState();
+        try {
+            int amountRemoved = INITIAL_INDEX;
 
-        if (currentSong != null && currentSong.getId() == id) {
-            currentSong = null;
-            amountRemoved++;
-        }
+            if (currentSong != null && currentSong.getId() == id) {
+                currentSong = null;
+                amountRemoved++;
+            }
 
-        for (int prio = 0; prio < NUM_PRIORITIES; prio++) {
-            int i = INITIAL_INDEX;
-            while (i < sizes[prio]) {
-                if (queues[prio][i].getId() == id) {
-                    for (int j = i; j < sizes[prio] - SHIFT; j++) {
-                        queues[prio][j] = queues[prio][j + SHIFT];
-                    }
-                    queues[prio][sizes[prio] - SHIFT] = null;
-                    sizes[prio]--;
-                    amountRemoved++;
-                } else {
-                    i++;
+            for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+                amountRemoved += queues[prio].removeById(id);
+                if (queues[prio].isEmpty()) {
+                    scheduler.clear(prio);
                 }
             }
-        }
 
-        return amountRemoved;
+            if (feed != null && amountRemoved > INITIAL_INDEX) {
+                feed.removed(id, amountRemoved);
+            }
+            return amountRemoved;
+        } finally {
+            unlockState();
+        }
     }
 
     /**
@@ -126,65 +422,130 @@ public class Playlist {
      * @param song the song to be removed
      */
     public void removeFirstFromQueue(Song song) {
-        int prio = song.getPriority();
+        lockState();
+        try {
+            int prio = song.getPriority();
+            int position = feed == null ? INITIAL_INDEX : listedBefore(prio);
+            Song removed = pollFirst(prio);
+            if (feed != null && removed != null) {
+                feed.skipped(position, removed.getId());
+            }
+        } finally {
+            unlockState();
+        }
+    }
 
-        for (int i = 0; i < sizes[prio] - SHIFT; i++) {
-            queues[prio][i] = queues[prio][i + SHIFT];
+    private Song pollFirst(int prio) {
+        if (queues[prio] == null) {
+            return null;
+        }
+        Song song = queues[prio].pollFirst();
+        if (queues[prio].isEmpty()) {
+            scheduler.clear(prio);
         }
-        queues[prio][sizes[prio] - SHIFT] = null;
-        sizes[prio]--;
+        return song;
     }
 
     /**
      * Advances playback by the given number of seconds, switching songs as
      * necessary and moving finished songs to the history.
+     * <p>
+     * Whenever a new song would start, all songs of its queue that finish
+     * within the remaining time are found at once and moved to the history
+     * as one range, so the cost does not depend on the amount of seconds.
      *
      * @param seconds number of seconds to play
      */
     public void play(int seconds) {
-        int remainingSeconds = seconds;
-        while (remainingSeconds > 0) {
-            if (currentSong == null) {
-                for (int prio = 0; prio < NUM_PRIORITIES; prio++) {
-                    if (sizes[prio] > 0) {
-                        currentSong = queues[prio][INITIAL_INDEX];
-                        removeFirstFromQueue(currentSong);
-                        break;
-                    }
-                }
+        lockState();
+        try {
+            int remainingSeconds = seconds;
+            while (remainingSeconds > 0) {
                 if (currentSong == null) {
-                    return;
+                    int prio = scheduler.next();
+                    if (prio == NONE) {
+                        return;
+                    }
+                    remainingSeconds -= finishQueued(prio, remainingSeconds);
+                    if (remainingSeconds <= 0 || queues[prio].isEmpty()) {
+                        continue;
+                    }
+                    currentSong = pollFirst(prio);
+                    if (feed != null) {
+                        feed.started(INITIAL_INDEX, currentSong.getId());
+                    }
                 }
-            }
 
-            int remaining = currentSong.getRemainingTime();
+                int remaining = currentSong.getRemainingTime();
 
-            if (remaining > remainingSeconds) {
-                currentSong.setRemainingTime(remaining - remainingSeconds);
-                remainingSeconds = NO_TIME_LEFT;
-            } else {
-                remainingSeconds -= remaining;
-                addToHistory(currentSong);
-                currentSong = null;
+                if (remaining > remainingSeconds) {
+                    currentSong.setRemainingTime(remaining - remainingSeconds);
+                    remainingSeconds = NO_TIME_LEFT;
+                } else {
+                    remainingSeconds -= remaining;
+                    history.append(currentSong);
+                    if (feed != null) {
+                        feed.finished(currentPosition(), currentSong.getId());
+                    }
+                    currentSong = null;
+                }
             }
+        } finally {
+            unlockState();
         }
     }
 
+    /**
+     * Moves the leading songs of a queue that finish within the given time
+     * to the history. Every moved song is reported as started and finished,
+     * like a song that is played to the end one step at a time.
+     *
+     * @return the play time used by the moved songs
+     */
+    private int finishQueued(int prio, int seconds) {
+        SongQueue queue = queues[prio];
+        int slots = queue.finishingSpan(seconds);
+        if (slots == INITIAL_INDEX) {
+            return NO_TIME_LEFT;
+        }
+        int logged = history.size();
+        int used = (int) queue.pollSpan(slots, history);
+        if (queue.isEmpty()) {
+            scheduler.clear(prio);
+        }
+        if (feed != null) {
+            history.forEach(logged, history.size(),
+                    (id, artist, title, length) -> {
+                        feed.started(INITIAL_INDEX, id);
+                        feed.finished(INITIAL_INDEX, id);
+                    });
+        }
+        return used;
+    }
+
     /**
      * Stops the current song without adding it to the history.
      */
     public void skip() {
-        if (currentSong != null) {
-            currentSong = null;
-            return;
-        }
+        lockState();
+        try {
+            if (currentSong != null) {
+                if (feed != null) {
+                    feed.skipped(currentPosition(), currentSong.getId());
+                }
+                currentSong = null;
+                return;
+            }
 
-        for (int prio = 0; prio < NUM_PRIORITIES; prio++) {
-            if (sizes[prio] > 0) {
-                Song song = queues[prio][INITIAL_INDEX];
-                removeFirstFromQueue(song);
-                break;
+            int prio = scheduler.next();
+            if (prio != NONE) {
+                Song skipped = pollFirst(prio);
+                if (feed != null) {
+                    feed.skipped(INITIAL_INDEX, skipped.getId());
+                }
             }
+        } finally {
+            unlockState();
         }
     }
 
@@ -195,30 +556,309 @@ public class Playlist {
      * @param song the song to schedule next
      */
     public void addNext(Song song) {
-        int prio = DEFAULT_PRIORITY;
+        lockQueue(DEFAULT_PRIORITY);
+        try {
+            queueFor(DEFAULT_PRIORITY).addFirst(song);
+            scheduler.mark(DEFAULT_PRIORITY);
+            if (feed != null) {
+                feed.added(listedBefore(DEFAULT_PRIORITY), song);
+            }
+        } finally {
+            unlockQueue(DEFAULT_PRIORITY);
+        }
+    }
 
-        if (sizes[prio] == queues[prio].length) {
-            queues[prio] = expandArray(queues[prio]);
+    /**
+     * Attaches a subscriber that receives every later change of the
+     * playlist. The feed first receives the current list as additions, and
+     * the current song as started, so the subscriber can build its copy from
+     * the feed alone. A playlist may have several subscribers, each with a
+     * feed of its own.
+     *
+     * @param changes the feed of the subscriber
+     * @throws IllegalStateException if the feed is already subscribed
+     */
+    public void subscribe(ChangeFeed changes) {
+        lockState();
+        try {
+            for (ChangeFeed subscribed = feed; subscribed != null; subscribed = subscribed.next) {
+                if (subscribed == changes) {
+                    throw new IllegalStateException(SUBSCRIBED_MSG);
+                }
+            }
+            attach(changes);
+        } finally {
+            unlockState();
         }
+    }
 
-        int insertIndex = DEFAULT_PRIORITY;
+    /**
+     * Discards the pending changes of a subscriber and publishes the current
+     * list to it again, like {@link #subscribe(ChangeFeed)}. The subscriber
+     * calls this once its feed became invalid and it dropped its copy.
+     *
+     * @param changes the feed of the subscriber, ignored if not subscribed
+     */
+    public void resync(ChangeFeed changes) {
+        lockState();
+        try {
+            if (detach(changes)) {
+                changes.reset();
+                attach(changes);
+            }
+        } finally {
+            unlockState();
+        }
+    }
 
-        for (int i = sizes[prio] - SHIFT; i >= insertIndex; i--) {
-            queues[prio][i + SHIFT] = queues[prio][i];
+    /**
+     * Detaches a subscriber, whose feed receives no further changes.
+     *
+     * @param changes the feed of the subscriber, ignored if not subscribed
+     */
+    public void unsubscribe(ChangeFeed changes) {
+        lockState();
+        try {
+            detach(changes);
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Checks whether a subscriber follows the changes of the playlist.
+     *
+     * @return {@code true} if a feed is attached
+     */
+    boolean hasSubscriber() {
+        return feed != null;
+    }
+
+    /**
+     * Publishes the current list to a detached feed and puts it in front of
+     * the chain of subscribed feeds.
+     */
+    private void attach(ChangeFeed changes) {
+        publishListed(changes);
+        changes.next = feed;
+        feed = changes;
+    }
+
+    /**
+     * Removes a feed from the chain of subscribed feeds.
+     *
+     * @return {@code false} if the feed was not subscribed
+     */
+    private boolean detach(ChangeFeed changes) {
+        if (feed == null) {
+            return false;
+        }
+        if (feed == changes) {
+            feed = changes.next;
+            changes.next = null;
+            return true;
+        }
+        for (ChangeFeed previous = feed; previous != null; previous = previous.next) {
+            if (previous.next == changes) {
+                previous.next = changes.next;
+                changes.next = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishes every listed song in list order as an addition to a feed
+     * that is not part of the chain.
+     */
+    private void publishListed(ChangeFeed changes) {
+        boolean currentListed = currentSong == null;
+        int position = INITIAL_INDEX;
+        for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+            if (!currentListed && currentSong.getPriority() <= prio) {
+                publishCurrent(changes, position++);
+                currentListed = true;
+            }
+            for (Song song : queues[prio]) {
+                changes.added(position++, song);
+            }
+        }
+        if (!currentListed) {
+            publishCurrent(changes, position);
+        }
+    }
+
+    private void publishCurrent(ChangeFeed changes, int position) {
+        changes.added(position, currentSong);
+        changes.started(position, currentSong.getId());
+    }
+
+    /**
+     * Publishes the songs that were appended to the queue of the given
+     * priority, which form the end of the queue.
+     */
+    private void publishAdded(int priority, Song[] songs, int from, int count) {
+        if (feed == null) {
+            return;
+        }
+        int position = listedBefore(priority) + queues[priority].size() - count;
+        for (int i = 0; i < count; i++) {
+            feed.added(position + i, songs[from + i]);
+        }
+    }
+
+    /**
+     * Counts the songs listed in front of the queue of the given priority:
+     * the songs of all higher priorities and the current song unless its
+     * priority is lower.
+     */
+    private int listedBefore(int priority) {
+        int position = currentSong != null && currentSong.getPriority() <= priority
+                ? 1 : INITIAL_INDEX;
+        for (int prio = scheduler.next(); prio != NONE && prio < priority;
+                prio = scheduler.next(prio + 1)) {
+            position += queues[prio].size();
         }
+        return position;
+    }
+
+    /**
+     * Gets the position of the current song in the order of {@link #list()}.
+     */
+    private int currentPosition() {
+        return listedBefore(currentSong.getPriority()) - 1;
+    }
+
+    /**
+     * Gets the queue of the given priority and creates it on first use, so
+     * that unused priority levels do not occupy memory.
+     */
+    private SongQueue queueFor(int priority) {
+        SongQueue queue = queues[priority];
+        if (queue == null) {
+            queue = new SongQueue();
+            queues[priority] = queue;
+        }
+        return queue;
+    }
+
+    /**
+     * Blocks all concurrent modifications until {@link #unlockState()} is
+     * called, so that the complete state can be read or replaced at once.
+     * Every public operation holds this lock while it runs, so a subclass
+     * that overrides it guards all of them. The lock has to be reentrant,
+     * because operations may call each other. Single-threaded playlists need
+     * no locking.
+     */
+    void lockState() {
+    }
+
+    /**
+     * Releases the lock taken by {@link #lockState()}.
+     */
+    void unlockState() {
+    }
+
+    /**
+     * Blocks concurrent modifications of the queue of the given priority
+     * until {@link #unlockQueue(int)} is called. Adding a song only holds
+     * this lock, so a subclass may let producers of different priorities
+     * add songs at the same time. By default the complete state is locked.
+     *
+     * @param priority a valid priority
+     */
+    void lockQueue(int priority) {
+        lockState();
+    }
+
+    /**
+     * Releases the lock taken by {@link #lockQueue(int)}.
+     *
+     * @param priority the priority passed to {@link #lockQueue(int)}
+     */
+    void unlockQueue(int priority) {
+        unlockState();
+    }
+
+    /**
+     * Gets the song that is currently playing, even if it has no time left.
+     *
+     * @return the current song, or {@code null} if none
+     */
+    Song getCurrentSong() {
+        return currentSong;
+    }
+
+    /**
+     * Gets the queue of the given priority.
+     *
+     * @param priority a valid priority
+     * @return the queue, or {@code null} if no song was added with the
+     *         priority since the queue was last empty and trimmed
+     */
+    SongQueue getQueue(int priority) {
+        return queues[priority];
+    }
 
-        queues[prio][insertIndex] = song;
-        sizes[prio]++;
+    /**
+     * Gets the log of played songs.
+     *
+     * @return the history log
+     */
+    HistoryLog getHistory() {
+        return history;
     }
 
     /**
-     * Doubles the size of the given song array.
+     * Gets the sequence number of the last journal entry applied to the
+     * playlist.
+     *
+     * @return the sequence number, or {@code 0} if no entry was applied
      */
-    private Song[] expandArray(Song[] array) {
-        Song[] newArray = new Song[array.length * EXPANSION_FACTOR];
-        final int startIndex = 0;
-        System.arraycopy(array, startIndex, newArray, startIndex, array.length);
-        return newArray;
+    long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Records that the journal entry with the given sequence number has been
+     * applied to the playlist.
+     *
+     * @param sequence the sequence number
+     */
+    void setJournalSequence(long sequence) {
+        journalSequence = sequence;
+    }
+
+    /**
+     * Replaces the complete state of the playlist.
+     *
+     * @param current the song that is currently playing, or {@code null}
+     * @param restoredQueues the queues by priority, at most one per level
+     * @param restoredHistory the log of played songs
+     * @param sequence the last journal entry contained in the state
+     */
+    void restore(Song current, SongQueue[] restoredQueues, HistoryLog restoredHistory,
+            long sequence) {
+        lockState();
+        try {
+            for (int prio = 0; prio < queues.length; prio++) {
+                queues[prio] = prio < restoredQueues.length ? restoredQueues[prio] : null;
+                if (queues[prio] == null || queues[prio].isEmpty()) {
+                    scheduler.clear(prio);
+                } else {
+                    scheduler.mark(prio);
+                }
+            }
+            currentSong = current;
+            history = restoredHistory;
+            journalSequence = sequence;
+            for (ChangeFeed subscribed = feed; subscribed != null; subscribed = subscribed.next) {
+                subscribed.invalidate();
+            }
+        } finally {
+            unlockState();
+        }
     }
 
     /**
@@ -228,25 +868,191 @@ public class Playlist {
      * @return array of formatted song strings
      */
     public String[] list() {
-        int total = 0;
-        if (currentSong != null) {
-            total++;
+        lockState();
+        try {
+            String[] result = new String[listSize()];
+            forEachListed(new SongVisitor() {
+                private int index = INITIAL_INDEX;
+
+                @Override
+                public void visit(int id, String artist, String title, int length) {
+                    result[index++] = Song.toListString(id, artist, title, length);
+                }
+            });
+            return result;
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Passes all songs of the playlist in the order of {@link #list()} to the
+     * visitor without collecting them first.
+     *
+     * @param visitor receiver of the songs
+     */
+    public void forEachListed(SongVisitor visitor) {
+        lockState();
+        try {
+            forEachListed(INITIAL_INDEX, Integer.MAX_VALUE, visitor);
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the number of songs listed by {@link #list()}.
+     *
+     * @return the amount of queued songs plus the current song if present
+     */
+    public int listSize() {
+        lockState();
+        try {
+            int total = currentSong == null ? INITIAL_INDEX : 1;
+            for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+                total += queues[prio].size();
+            }
+            return total;
+        } finally {
+            unlockState();
         }
-        for (int i = 0; i < NUM_PRIORITIES; i++) {
-            total += sizes[i];
+    }
+
+    /**
+     * Passes the songs {@code [from, to)} in the order of {@link #list()} to
+     * the visitor. Queues in front of the range are skipped as a whole and
+     * the first song of the range is found in logarithmic time, so the time
+     * taken depends on the size of the range only. Positions from
+     * {@link #listSize()} on are ignored.
+     *
+     * @param from position of the first song
+     * @param to position after the last song
+     * @param visitor receiver of the songs
+     */
+    public void forEachListed(int from, int to, SongVisitor visitor) {
+        lockState();
+        try {
+            boolean currentListed = currentSong == null;
+            int position = INITIAL_INDEX;
+            for (int prio = scheduler.next(); prio != NONE && position < to;
+                    prio = scheduler.next(prio + 1)) {
+                if (!currentListed && currentSong.getPriority() <= prio) {
+                    if (position >= from) {
+                        visit(currentSong, visitor);
+                    }
+                    position++;
+                    currentListed = true;
+                }
+                SongQueue queue = queues[prio];
+                if (position + queue.size() > from && position < to) {
+                    int first = Math.max(from - position, INITIAL_INDEX);
+                    int count = Math.min(queue.size(), to - position) - first;
+                    Iterator<Song> songs = queue.iterator(first);
+                    for (int i = 0; i < count; i++) {
+                        visit(songs.next(), visitor);
+                    }
+                }
+                position += queue.size();
+            }
+            if (!currentListed && position >= from && position < to) {
+                visit(currentSong, visitor);
+            }
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Gets the position of the first song with the given id in the order of
+     * {@link #list()} in logarithmic time.
+     *
+     * @param id the song id
+     * @return the position, or {@link #NOT_LISTED} if no song with the id is
+     *         queued or playing
+     */
+    public int positionOf(int id) {
+        lockState();
+        try {
+            boolean currentListed = currentSong == null;
+            int position = INITIAL_INDEX;
+            for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+                if (!currentListed && currentSong.getPriority() <= prio) {
+                    if (currentSong.getId() == id) {
+                        return position;
+                    }
+                    position++;
+                    currentListed = true;
+                }
+                int inQueue = queues[prio].positionOf(id);
+                if (inQueue != NOT_LISTED) {
+                    return position + inQueue;
+                }
+                position += queues[prio].size();
+            }
+            return !currentListed && currentSong.getId() == id ? position : NOT_LISTED;
+        } finally {
+            unlockState();
         }
+    }
 
-        String[] result = new String[total];
-        int index = 0;
-        for (int prio = 0; prio < NUM_PRIORITIES; prio++) {
-            if (currentSong != null && currentSong.getPriority() == prio) {
-                result[index++] = currentSong.toListString();
+    /**
+     * Sums the time left to play, consisting of the remaining time of the
+     * current song and the play time of all queued songs. Each queue keeps
+     * the sum of its play times, so this takes logarithmic time.
+     *
+     * @return the total remaining play time in seconds
+     */
+    public long remainingPlayTime() {
+        lockState();
+        try {
+            long total = currentRemainingTime();
+            for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+                total += queues[prio].playTime();
             }
-            for (int i = 0; i < sizes[prio]; i++) {
-                result[index++] = queues[prio][i].toListString();
+            return total;
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Calculates the time until the first song with the given id starts
+     * playing if no songs are added or removed in the meantime. The current
+     * song finishes first, then the queues are played in order of priority.
+     * This takes logarithmic time.
+     *
+     * @param id the song id
+     * @return the time in seconds, {@code 0} if the song is playing, or
+     *         {@link #NOT_SCHEDULED} if no song with the id is queued or
+     *         playing
+     */
+    public long timeUntil(int id) {
+        lockState();
+        try {
+            long time = currentRemainingTime();
+            if (time > NO_TIME_LEFT && currentSong.getId() == id) {
+                return NO_TIME_LEFT;
             }
+            for (int prio = scheduler.next(); prio != NONE; prio = scheduler.next(prio + 1)) {
+                SongQueue queue = queues[prio];
+                int position = queue.positionOf(id);
+                if (position != NOT_LISTED) {
+                    return time + queue.playTimeBefore(position);
+                }
+                time += queue.playTime();
+            }
+            return NOT_SCHEDULED;
+        } finally {
+            unlockState();
         }
-        return result;
     }
-}
 
+    private int currentRemainingTime() {
+        return currentSong == null ? NO_TIME_LEFT
+                : Math.max(currentSong.getRemainingTime(), NO_TIME_LEFT);
+    }
+
+    private static void visit(Song song, SongVisitor visitor) {
+        visitor.visit(song.getId(), song.getArtist(), song.getTitle(), song.getLength());
+    }
+}
@@ -0,0 +1,111 @@
+package kastel;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of add, next and remove operations that
+ * {@link Playlist#applyBatch(PlaylistBatch)} applies in a single call.
+ * <p>
+ * The result is the same as performing the operations one after another,
+ * but consecutive operations of the same kind are applied together: every
+ * queue receives a run of added songs at once, grows at most once and
+ * updates its play time tree for the whole run in one pass.
+ * Priorities are checked when an operation is added, so applying a batch
+ * cannot fail halfway.
+ * @author ujnaa
+ */
+public class PlaylistBatch {
+    /** kind of an operation that adds a song to the queue of its priority */
+    static final byte ADD = 0;
+    /** kind of an operation that schedules a song as the next track */
+    static final byte NEXT = 1;
+    /** kind of an operation that removes all songs with an id */
+    static final byte REMOVE = 2;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EXPANSION_FACTOR = 2;
+
+    private final int numPriorities;
+    private byte[] kinds;
+    private Song[] songs;  // songs[i] of add and next operations
+    private int[] ids;  // ids[i] of remove operations
+    private int size;
+
+    /**
+     * Creates an empty batch for a playlist with the given amount of
+     * priorities.
+     *
+     * @param numPriorities number of priority levels of the playlist
+     */
+    public PlaylistBatch(int numPriorities) {
+        this.numPriorities = numPriorities;
+        kinds = new byte[INITIAL_CAPACITY];
+        songs = new Song[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an operation like {@link Playlist#addSong(Song)}.
+     *
+     * @param song the song to enqueue
+     * @throws IllegalArgumentException if the song has an invalid priority
+     */
+    public void add(Song song) {
+        int priority = song.getPriority();
+        if (priority < 0 || priority >= numPriorities) {
+            throw new IllegalArgumentException(Playlist.INVALID_PRIORITY_MSG + priority);
+        }
+        append(ADD, song, 0);
+    }
+
+    /**
+     * Adds an operation like {@link Playlist#addNext(Song)}.
+     *
+     * @param song the song to schedule next
+     */
+    public void addNext(Song song) {
+        append(NEXT, song, 0);
+    }
+
+    /**
+     * Adds an operation like {@link Playlist#removeById(int)}.
+     *
+     * @param id identifier of the songs to remove
+     */
+    public void remove(int id) {
+        append(REMOVE, null, id);
+    }
+
+    /**
+     * Gets the number of operations.
+     *
+     * @return the batch size
+     */
+    public int size() {
+        return size;
+    }
+
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    Song[] songs() {
+        return songs;
+    }
+
+    int id(int index) {
+        return ids[index];
+    }
+
+    private void append(byte kind, Song song, int id) {
+        if (size == kinds.length) {
+            int capacity = kinds.length * EXPANSION_FACTOR;
+            kinds = Arrays.copyOf(kinds, capacity);
+            songs = Arrays.copyOf(songs, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        kinds[size] = kind;
+        songs[size] = song;
+        ids[size] = id;
+        size++;
+    }
+}
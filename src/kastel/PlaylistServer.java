@@ -0,0 +1,169 @@
+package kastel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves playlists to clients connecting to a local TCP port.
+ * <p>
+ * Every connection is a session with a {@link CommandProcessor} of its own
+ * that speaks the same line protocol as the interactive application. By
+ * default every session also has a {@link Playlist} of its own. A server
+ * with a shared playlist lets all sessions operate on one thread-safe
+ * playlist instead, and every session may follow the changes the others
+ * make with the "subscribe" command. Sessions run on virtual threads, so a
+ * session waiting for input occupies no platform thread. Together with
+ * small I/O buffers and playlists that allocate their queues on first use,
+ * an idle session costs only a few kilobytes.
+ * <p>
+ * Commands that access files are disabled for clients. A session ends
+ * with the quit command or when the client closes the connection.
+ * @author ujnaa
+ */
+public class PlaylistServer implements Closeable {
+    /** initial size of the input and output buffers of a session */
+    public static final int SESSION_BUFFER_SIZE = 1 << 10;
+    private static final int BACKLOG = 1 << 12;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final int numPriorities;
+    private final TimingWheel wheel;
+    private final Playlist shared;  // null if every session has its own playlist
+
+    /**
+     * Creates a server listening on the loopback interface.
+     *
+     * @param port the port to listen on, {@code 0} picks a free port
+     * @param numPriorities number of priority levels of every playlist
+     * @throws IOException if the port cannot be opened
+     */
+    public PlaylistServer(int port, int numPriorities) throws IOException {
+        this(port, numPriorities, null);
+    }
+
+    /**
+     * Creates a server listening on the loopback interface whose playlists
+     * play in real time if a wheel is given.
+     *
+     * @param port the port to listen on, {@code 0} picks a free port
+     * @param numPriorities number of priority levels of every playlist
+     * @param wheel the wheel shared by the {@link RealtimePlaylist}s of all
+     *              sessions, or {@code null} to advance playback only with
+     *              the play command
+     * @throws IOException if the port cannot be opened
+     */
+    public PlaylistServer(int port, int numPriorities, TimingWheel wheel) throws IOException {
+        this(port, numPriorities, wheel, false);
+    }
+
+    /**
+     * Creates a server listening on the loopback interface whose sessions
+     * share one playlist if requested. A shared playlist is a
+     * {@link RealtimePlaylist} if a wheel is given and a
+     * {@link ConcurrentPlaylist} otherwise.
+     *
+     * @param port the port to listen on, {@code 0} picks a free port
+     * @param numPriorities number of priority levels of every playlist
+     * @param wheel the wheel of the {@link RealtimePlaylist}s, or
+     *              {@code null} to advance playback only with the play
+     *              command
+     * @param sharePlaylist whether all sessions operate on one playlist
+     * @throws IOException if the port cannot be opened
+     */
+    public PlaylistServer(int port, int numPriorities, TimingWheel wheel, boolean sharePlaylist)
+            throws IOException {
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessions = Executors.newVirtualThreadPerTaskExecutor();
+        this.numPriorities = numPriorities;
+        this.wheel = wheel;
+        if (!sharePlaylist) {
+            this.shared = null;
+        } else if (wheel == null) {
+            this.shared = new ConcurrentPlaylist(numPriorities);
+        } else {
+            this.shared = new RealtimePlaylist(wheel, numPriorities);
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections and starts a session for each of them until the
+     * server is closed.
+     *
+     * @throws IOException if accepting a connection fails while the server
+     *                     is open
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            sessions.execute(() -> runSession(socket));
+        }
+    }
+
+    /**
+     * Stops accepting connections and ends all sessions.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            serverSocket.close();
+        } finally {
+            sessions.shutdownNow();
+            if (shared instanceof RealtimePlaylist realtime) {
+                realtime.stop();
+            }
+        }
+    }
+
+    private void runSession(Socket socket) {
+        RealtimePlaylist realtime = wheel == null || shared != null ? null
+                : new RealtimePlaylist(wheel, numPriorities);
+        Playlist playlist = shared;
+        if (playlist == null) {
+            playlist = realtime == null ? new Playlist(numPriorities) : realtime;
+        }
+        try (socket; LineSource input = new StreamLineSource(socket.getInputStream(),
+                SESSION_BUFFER_SIZE)) {
+            socket.setTcpNoDelay(true);
+            Output output = Output.toStream(socket.getOutputStream(), StandardCharsets.UTF_8,
+                    Output.DEFAULT_BATCH_LINES, Output.DEFAULT_FLUSH_INTERVAL_MILLIS,
+                    SESSION_BUFFER_SIZE);
+            CommandProcessor processor = new CommandProcessor(playlist, input, output);
+            processor.disableFileCommands();
+            processor.run();
+        } catch (IOException | UncheckedIOException e) {
+            // the client closed the connection or sent a line longer than
+            // StreamLineSource.MAX_LINE_BYTES, which ends the session
+        } finally {
+            if (realtime != null) {
+                realtime.stop();
+            }
+        }
+    }
+}
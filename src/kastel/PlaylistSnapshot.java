@@ -0,0 +1,441 @@
+package kastel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and restores the complete state of a {@link Playlist} in a compact
+ * binary file.
+ * <p>
+ * All values are big-endian. The file starts with a header of magic number,
+ * format version, number of priority levels and, since version 2, the
+ * sequence number of the last {@link CommandJournal} entry contained in the
+ * snapshot. It is followed by two sections:
+ * <ol>
+ *     <li>the queued songs: a string dictionary of their artists and titles,
+ *     the current song and every queue in priority order,</li>
+ *     <li>the history: its own string dictionary, the number of entries and
+ *     the id, artist, title and length columns one after another.</li>
+ * </ol>
+ * Strings and queues are prefixed by their length. A song record consists
+ * of id, artist code, title code, length and remaining time.
+ * <p>
+ * Files are written through a {@link FileChannel} into a temporary file
+ * that replaces the target only when complete. The history columns are
+ * copied chunk by chunk and every queue is filled with one bulk append.
+ * @author ujnaa
+ */
+public final class PlaylistSnapshot {
+    private static final int MAGIC = 0x4B504C53;
+    private static final int FORMAT_VERSION = 2;
+    /** oldest version that can still be loaded, it lacks the journal sequence */
+    private static final int FIRST_VERSION = 1;
+    private static final long NO_SEQUENCE = 0;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+    /** marks a song record that is followed by its own priority */
+    private static final int NO_PRIORITY = -1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String INVALID_SNAPSHOT = "Invalid snapshot";
+    private static final String UNSUPPORTED_VERSION = "Unsupported snapshot version ";
+    private static final String TOO_MANY_PRIORITIES = "Snapshot needs more priorities: ";
+    private static final int[] HISTORY_COLUMNS = {
+        HistoryLog.ID_COLUMN, HistoryLog.ARTIST_COLUMN, HistoryLog.TITLE_COLUMN,
+        HistoryLog.LENGTH_COLUMN,
+    };
+
+    private PlaylistSnapshot() {
+    }
+
+    /**
+     * Writes the state of the playlist to the given file.
+     *
+     * @param playlist the playlist to save
+     * @param path the target file, replaced if it exists
+     * @throws IOException if writing fails
+     */
+    public static void save(Playlist playlist, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (Writer writer = new Writer(FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            writer.putInt(MAGIC);
+            writer.putInt(FORMAT_VERSION);
+            playlist.lockState();
+            try {
+                writer.putInt(playlist.getNumPriorities());
+                writer.putLong(playlist.getJournalSequence());
+                writeQueues(playlist, writer);
+                writeHistory(playlist.getHistory(), writer);
+            } finally {
+                playlist.unlockState();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the state of the playlist with the content of the given file.
+     * The playlist is left unchanged if the file cannot be read.
+     *
+     * @param path the snapshot file
+     * @param playlist the playlist to restore
+     * @throws IOException if reading fails or the file is not a valid snapshot
+     */
+    public static void load(Path path, Playlist playlist) throws IOException {
+        try (Reader reader = new Reader(FileChannel.open(path, StandardOpenOption.READ))) {
+            if (reader.getInt() != MAGIC) {
+                throw new IOException(INVALID_SNAPSHOT);
+            }
+            int version = reader.getInt();
+            if (version < FIRST_VERSION || version > FORMAT_VERSION) {
+                throw new IOException(UNSUPPORTED_VERSION + version);
+            }
+            int priorities = reader.getInt();
+            long sequence = version > FIRST_VERSION ? reader.getLong() : NO_SEQUENCE;
+            if (priorities < 0 || priorities > playlist.getNumPriorities()) {
+                throw new IOException(TOO_MANY_PRIORITIES + priorities);
+            }
+            String[] strings = readStrings(reader);
+            Song current = null;
+            if (reader.getByte() == PRESENT) {
+                current = readSong(reader, strings, NO_PRIORITY);
+                if (!playlist.isValidPriority(current.getPriority())) {
+                    throw new IOException(INVALID_SNAPSHOT);
+                }
+            }
+            SongQueue[] queues = new SongQueue[priorities];
+            for (int prio = 0; prio < priorities; prio++) {
+                queues[prio] = readQueue(reader, strings, prio);
+            }
+            HistoryLog history = readHistory(reader);
+            playlist.lockState();
+            try {
+                playlist.restore(current, queues, history, sequence);
+            } finally {
+                playlist.unlockState();
+            }
+        }
+    }
+
+    private static void writeQueues(Playlist playlist, Writer writer) throws IOException {
+        StringDictionary strings = new StringDictionary();
+        Song current = playlist.getCurrentSong();
+        if (current != null) {
+            encode(current, strings);
+        }
+        for (int prio = 0; prio < playlist.getNumPriorities(); prio++) {
+            SongQueue queue = playlist.getQueue(prio);
+            if (queue != null) {
+                for (Song song : queue) {
+                    encode(song, strings);
+                }
+            }
+        }
+        writeDictionary(strings, writer);
+        if (current == null) {
+            writer.putByte(ABSENT);
+        } else {
+            writer.putByte(PRESENT);
+            writeSong(current, strings, writer);
+            writer.putInt(current.getPriority());
+        }
+        for (int prio = 0; prio < playlist.getNumPriorities(); prio++) {
+            SongQueue queue = playlist.getQueue(prio);
+            if (queue == null) {
+                writer.putInt(0);
+                continue;
+            }
+            writer.putInt(queue.size());
+            for (Song song : queue) {
+                writeSong(song, strings, writer);
+            }
+        }
+    }
+
+    private static void encode(Song song, StringDictionary strings) {
+        strings.encode(song.getArtist());
+        strings.encode(song.getTitle());
+    }
+
+    private static void writeSong(Song song, StringDictionary strings, Writer writer)
+            throws IOException {
+        writer.putInt(song.getId());
+        writer.putInt(strings.encode(song.getArtist()));
+        writer.putInt(strings.encode(song.getTitle()));
+        writer.putInt(song.getLength());
+        writer.putInt(song.getRemainingTime());
+    }
+
+    private static void writeHistory(HistoryLog history, Writer writer) throws IOException {
+        writeDictionary(history.getStrings(), writer);
+        int size = history.size();
+        writer.putInt(size);
+        for (int column : HISTORY_COLUMNS) {
+            for (int chunk = 0; chunk < history.chunkCount(); chunk++) {
+                int length = Math.min(HistoryLog.CHUNK_SIZE, size - chunk * HistoryLog.CHUNK_SIZE);
+                writer.putInts(history.chunk(column, chunk), length);
+            }
+        }
+    }
+
+    private static void writeDictionary(StringDictionary strings, Writer writer)
+            throws IOException {
+        writer.putInt(strings.size());
+        for (int code = 0; code < strings.size(); code++) {
+            writer.putString(strings.decode(code));
+        }
+    }
+
+    private static String[] readStrings(Reader reader) throws IOException {
+        int size = reader.getInt();
+        if (size < 0) {
+            throw new IOException(INVALID_SNAPSHOT);
+        }
+        String[] strings = new String[size];
+        for (int code = 0; code < size; code++) {
+            strings[code] = reader.getString();
+        }
+        return strings;
+    }
+
+    private static StringDictionary readDictionary(Reader reader) throws IOException {
+        StringDictionary strings = new StringDictionary();
+        for (String value : readStrings(reader)) {
+            strings.encode(value);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads a song record. Records without a known priority, marked by
+     * {@link #NO_PRIORITY}, carry it after the remaining time.
+     */
+    private static Song readSong(Reader reader, String[] strings, int priority)
+            throws IOException {
+        int id = reader.getInt();
+        String artist = decode(strings, reader.getInt());
+        String title = decode(strings, reader.getInt());
+        int length = reader.getInt();
+        int remainingTime = reader.getInt();
+        Song song = new Song(id, artist, title, length,
+                priority == NO_PRIORITY ? reader.getInt() : priority);
+        song.setRemainingTime(remainingTime);
+        return song;
+    }
+
+    private static String decode(String[] strings, int code) throws IOException {
+        requireCode(code, strings.length);
+        return strings[code];
+    }
+
+    private static void requireCode(int code, int dictionarySize) throws IOException {
+        if (code < 0 || code >= dictionarySize) {
+            throw new IOException(INVALID_SNAPSHOT);
+        }
+    }
+
+    private static SongQueue readQueue(Reader reader, String[] strings, int priority)
+            throws IOException {
+        int size = reader.getInt();
+        if (size < 0) {
+            throw new IOException(INVALID_SNAPSHOT);
+        }
+        if (size == 0) {
+            return null;
+        }
+        Song[] songs = new Song[size];
+        for (int i = 0; i < size; i++) {
+            songs[i] = readSong(reader, strings, priority);
+        }
+        SongQueue queue = new SongQueue();
+        queue.appendAll(songs, 0, size);
+        return queue;
+    }
+
+    private static HistoryLog readHistory(Reader reader) throws IOException {
+        StringDictionary strings = readDictionary(reader);
+        int size = reader.getInt();
+        if (size < 0) {
+            throw new IOException(INVALID_SNAPSHOT);
+        }
+        HistoryLog history = new HistoryLog(strings, size);
+        for (int column : HISTORY_COLUMNS) {
+            for (int chunk = 0; chunk < history.chunkCount(); chunk++) {
+                int length = Math.min(HistoryLog.CHUNK_SIZE, size - chunk * HistoryLog.CHUNK_SIZE);
+                reader.getInts(history.chunk(column, chunk), length);
+            }
+        }
+        for (int chunk = 0; chunk < history.chunkCount(); chunk++) {
+            int[] artists = history.chunk(HistoryLog.ARTIST_COLUMN, chunk);
+            int[] titles = history.chunk(HistoryLog.TITLE_COLUMN, chunk);
+            int length = Math.min(HistoryLog.CHUNK_SIZE, size - chunk * HistoryLog.CHUNK_SIZE);
+            for (int i = 0; i < length; i++) {
+                requireCode(artists[i], strings.size());
+                requireCode(titles[i], strings.size());
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Buffered writer of binary values to a file channel. Closing it writes
+     * the remaining buffer and forces the data to the storage device.
+     */
+    private static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        void putByte(byte value) throws IOException {
+            ensureSpace(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensureSpace(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureSpace(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            int written = 0;
+            while (written < length) {
+                ensureSpace(Integer.BYTES);
+                int count = Math.min(length - written, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, written, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                written += count;
+            }
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int written = 0;
+            while (written < bytes.length) {
+                ensureSpace(Byte.BYTES);
+                int count = Math.min(bytes.length - written, buffer.remaining());
+                buffer.put(bytes, written, count);
+                written += count;
+            }
+        }
+
+        private void ensureSpace(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of binary values from a file channel.
+     */
+    private static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.limit(0);
+        }
+
+        byte getByte() throws IOException {
+            require(Byte.BYTES);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        void getInts(int[] target, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                require(Integer.BYTES);
+                int count = Math.min(length - read, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(target, read, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                read += count;
+            }
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                throw new IOException(INVALID_SNAPSHOT);
+            }
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                require(Byte.BYTES);
+                int count = Math.min(length - read, buffer.remaining());
+                buffer.get(bytes, read, count);
+                read += count;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Refills the buffer until it holds at least the given amount of bytes.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException(INVALID_SNAPSHOT);
+                }
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package kastel;
+
+/**
+ * Handles the "position" command that prints the position of the first
+ * song with a given id in the order of the "list" command, starting at
+ * {@code 0}. Nothing is printed if no such song is queued or playing.
+ * @author ujnaa
+ */
+public class PositionCommand implements Command<Integer> {
+    private static final String KEYWORD = "position";
+    private static final String POSITION_MESSAGE = "Position ";
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
+    @Override
+    public Integer parse(String arguments) {
+        return arguments == null ? null : Integer.parseInt(arguments.trim());
+    }
+
+    @Override
+    public void execute(Integer id, Playlist playlist, Output output) {
+        int position = playlist.positionOf(id);
+        if (position != Playlist.NOT_LISTED) {
+            output.println(POSITION_MESSAGE + position);
+        }
+    }
+}
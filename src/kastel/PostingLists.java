@@ -0,0 +1,118 @@
+package kastel;
+
+/**
+ * Primitive multimap from keys to ascending lists of entry numbers, used
+ * by {@link HistoryLog} to find the entries of an artist or a song id
+ * without scanning the log.
+ * <p>
+ * Keys are stored in an open addressing table with linear probing like in
+ * {@link SongIdIndex}. Entries are only ever appended in ascending order, so
+ * every list is a growable array.
+ * @author ujnaa
+ */
+public class PostingLists {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_LIST_CAPACITY = 4;
+    private static final int EXPANSION_FACTOR = 2;
+    private static final int LOAD_FACTOR_DIVISOR = 2;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    private static final int HASH_SHIFT = 16;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private int[] keys;
+    private int[][] lists;  // lists[slot] = entries of keys[slot], null for free slots
+    private int[] sizes;
+    private int size;
+
+    /**
+     * Creates an empty multimap.
+     */
+    public PostingLists() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Appends an entry to the list of a key. The entry must be larger than
+     * every entry added before.
+     *
+     * @param key the key
+     * @param entry the entry number
+     */
+    public void add(int key, int entry) {
+        int slot = find(key);
+        if (lists[slot] == null) {
+            keys[slot] = key;
+            lists[slot] = new int[INITIAL_LIST_CAPACITY];
+            size++;
+        } else if (sizes[slot] == lists[slot].length) {
+            int[] grown = new int[lists[slot].length * EXPANSION_FACTOR];
+            System.arraycopy(lists[slot], 0, grown, 0, sizes[slot]);
+            lists[slot] = grown;
+        }
+        lists[slot][sizes[slot]++] = entry;
+        if (size * LOAD_FACTOR_DIVISOR > keys.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Gets the entries of a key. The array must not be modified and may be
+     * longer than the list; only its first {@link #count(int)} elements
+     * belong to the key.
+     *
+     * @param key the key
+     * @return the entries in ascending order
+     */
+    public int[] entries(int key) {
+        int[] list = lists[find(key)];
+        return list == null ? NO_ENTRIES : list;
+    }
+
+    /**
+     * Gets the amount of entries of a key.
+     *
+     * @param key the key
+     * @return the length of the list of the key
+     */
+    public int count(int key) {
+        return sizes[find(key)];
+    }
+
+    /**
+     * Finds the slot of the key or the free slot where it would be inserted.
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (lists[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[][] oldLists = lists;
+        int[] oldSizes = sizes;
+        allocate(oldKeys.length * EXPANSION_FACTOR);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLists[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                lists[slot] = oldLists[i];
+                sizes[slot] = oldSizes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        lists = new int[capacity][];
+        sizes = new int[capacity];
+    }
+
+    private static int hash(int key) {
+        int h = key * HASH_MULTIPLIER;
+        return h ^ (h >>> HASH_SHIFT);
+    }
+}
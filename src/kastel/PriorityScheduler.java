@@ -0,0 +1,142 @@
+package kastel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Occupancy bitmap over the priority levels of a playlist. A set bit marks
+ * a level whose queue holds at least one song, so the highest non-empty
+ * priority is found with a single trailing-zero count.
+ * <p>
+ * Levels are grouped into 64-bit words and a summary word records which
+ * words are non-zero, so a lookup costs two bit scans for up to
+ * {@value #MAX_PRIORITIES} levels.
+ * <p>
+ * A scheduler created for concurrent marking sets bits with atomic
+ * operations, so threads may mark different levels at the same time. All
+ * other operations still require exclusive access.
+ * @author ujnaa
+ */
+public class PriorityScheduler {
+    /** largest supported amount of priority levels */
+    public static final int MAX_PRIORITIES = Long.SIZE * Long.SIZE;
+    /** result of a lookup when no level is occupied */
+    public static final int NONE = -1;
+    private static final int WORD_SHIFT = 6;
+    private static final long ALL_BITS = -1L;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SUMMARY;
+
+    static {
+        try {
+            SUMMARY = MethodHandles.lookup().findVarHandle(PriorityScheduler.class, "summary",
+                    long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] words;
+    private final boolean concurrentMarks;
+    private long summary;
+
+    /**
+     * Creates a scheduler for the given amount of priority levels.
+     *
+     * @param levels number of priority levels
+     * @throws IllegalArgumentException if the amount is not supported
+     */
+    public PriorityScheduler(int levels) {
+        this(levels, false);
+    }
+
+    /**
+     * Creates a scheduler for the given amount of priority levels.
+     *
+     * @param levels number of priority levels
+     * @param concurrentMarks whether {@link #mark(int)} may be called by
+     *                        several threads at once
+     * @throws IllegalArgumentException if the amount is not supported
+     */
+    public PriorityScheduler(int levels, boolean concurrentMarks) {
+        if (levels <= 0 || levels > MAX_PRIORITIES) {
+            throw new IllegalArgumentException("Invalid number of priorities: " + levels);
+        }
+        words = new long[(levels + Long.SIZE - 1) >>> WORD_SHIFT];
+        this.concurrentMarks = concurrentMarks;
+    }
+
+    /**
+     * Marks the given level as occupied.
+     *
+     * @param level the priority level
+     */
+    public void mark(int level) {
+        int word = level >>> WORD_SHIFT;
+        if (concurrentMarks) {
+            WORDS.getAndBitwiseOr(words, word, 1L << level);
+            SUMMARY.getAndBitwiseOr(this, 1L << word);
+        } else {
+            words[word] |= 1L << level;
+            summary |= 1L << word;
+        }
+    }
+
+    /**
+     * Marks the given level as empty.
+     *
+     * @param level the priority level
+     */
+    public void clear(int level) {
+        int word = level >>> WORD_SHIFT;
+        words[word] &= ~(1L << level);
+        if (words[word] == 0) {
+            summary &= ~(1L << word);
+        }
+    }
+
+    /**
+     * Checks whether no level is occupied.
+     *
+     * @return {@code true} if every level is empty
+     */
+    public boolean isEmpty() {
+        return summary == 0;
+    }
+
+    /**
+     * Finds the highest occupied priority, which is the lowest level number.
+     *
+     * @return the level, or {@link #NONE} if every level is empty
+     */
+    public int next() {
+        if (summary == 0) {
+            return NONE;
+        }
+        int word = Long.numberOfTrailingZeros(summary);
+        return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(words[word]);
+    }
+
+    /**
+     * Finds the first occupied level that is not smaller than the given one.
+     *
+     * @param from the first level to consider
+     * @return the level, or {@link #NONE} if there is none
+     */
+    public int next(int from) {
+        int word = from >>> WORD_SHIFT;
+        if (word >= words.length) {
+            return NONE;
+        }
+        long bits = words[word] & (ALL_BITS << from);
+        if (bits != 0) {
+            return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+        }
+        long remainingWords = summary & (ALL_BITS << word << 1);
+        if (word + 1 == Long.SIZE || remainingWords == 0) {
+            return NONE;
+        }
+        word = Long.numberOfTrailingZeros(remainingWords);
+        return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(words[word]);
+    }
+}
@@ -4,15 +4,18 @@ package kastel;
  * Handles the "quit" command that ends the application.
  * @author ujnaa
  */
-public class QuitCommand implements Command {
+public class QuitCommand extends KeywordCommand {
     private static final String COMMAND = "quit";
-    @Override
-    public boolean matches(String input) {
-        return input.equals(COMMAND);
+
+    /**
+     * Creates the command.
+     */
+    public QuitCommand() {
+        super(COMMAND);
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
+    public void execute(String arguments, Playlist playlist, Output output) {
         //
     }
 }
@@ -0,0 +1,56 @@
+package kastel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Line source reading from a character stream through a large buffer.
+ * @author ujnaa
+ */
+public class ReaderLineSource implements LineSource {
+    /** default buffer size in characters */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final BufferedReader reader;
+
+    /**
+     * Creates a line source for the given reader.
+     *
+     * @param reader the reader to read from
+     * @param bufferSize size of the read buffer in characters
+     */
+    public ReaderLineSource(Reader reader, int bufferSize) {
+        this.reader = new BufferedReader(reader, bufferSize);
+    }
+
+    /**
+     * Creates a line source decoding the given byte stream.
+     *
+     * @param stream the stream to read from
+     * @param charset encoding of the stream
+     * @param bufferSize size of the read buffer in characters
+     * @return the new line source
+     */
+    public static ReaderLineSource fromStream(InputStream stream, Charset charset, int bufferSize) {
+        return new ReaderLineSource(new InputStreamReader(stream, charset), bufferSize);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return reader.readLine();
+    }
+
+    @Override
+    public boolean hasBufferedInput() throws IOException {
+        return reader.ready();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
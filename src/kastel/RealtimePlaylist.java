@@ -0,0 +1,153 @@
+package kastel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Playlist whose playback advances with the wall clock.
+ * <p>
+ * Instead of a timer that fires every second, the playlist remembers when
+ * it last caught up with the clock. Every operation first plays the whole
+ * seconds that have passed since then, so it sees the playlist as it is at
+ * that moment. In addition, a single task on a shared {@link TimingWheel}
+ * is due when the song that is currently playing ends, which moves finished
+ * songs to the history even while nobody accesses the playlist. Many
+ * playlists can share one wheel, and a playlist without songs schedules
+ * nothing at all.
+ * <p>
+ * The play command still fast-forwards playback on top of the clock. All
+ * operations are guarded by a single lock, so the playlist may be used by
+ * several threads.
+ * @author ujnaa
+ */
+public class RealtimePlaylist extends Playlist {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_SONG_SECONDS = 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel wheel;
+    private final Runnable onSongEnd = this::onSongEnd;
+    private long lastSync;  // System.nanoTime() up to which playback has advanced
+    private TimingWheel.Timeout songEnd;
+    private Song scheduledSong;  // song whose end is scheduled, with its remaining time
+    private int scheduledRemaining;
+    private boolean stopped;
+
+    /**
+     * Creates an empty playlist with the given amount of priority queues and
+     * an empty history.
+     *
+     * @param wheel the wheel that ends songs in time
+     * @param numPriorities number of priority levels, at most
+     *                      {@link PriorityScheduler#MAX_PRIORITIES}
+     * @throws IllegalArgumentException if the amount is not supported
+     */
+    public RealtimePlaylist(TimingWheel wheel, int numPriorities) {
+        super(numPriorities);
+        this.wheel = wheel;
+        this.lastSync = System.nanoTime();
+    }
+
+    /**
+     * Stops the clock of the playlist and cancels its pending task on the
+     * wheel. Later operations still catch up with the time that has passed.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            cancelSongEnd();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void restore(Song current, SongQueue[] restoredQueues, HistoryLog restoredHistory,
+            long sequence) {
+        lockState();
+        try {
+            super.restore(current, restoredQueues, restoredHistory, sequence);
+            lastSync = System.nanoTime();
+        } finally {
+            unlockState();
+        }
+    }
+
+    /**
+     * Takes the lock of the playlist and plays the time that has passed
+     * since the last operation.
+     */
+    @Override
+    void lockState() {
+        lock.lock();
+        if (lock.getHoldCount() == 1) {
+            catchUp();
+        }
+    }
+
+    /**
+     * Schedules the end of the song that plays next and releases the lock.
+     */
+    @Override
+    void unlockState() {
+        try {
+            if (lock.getHoldCount() == 1) {
+                scheduleSongEnd();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSongEnd() {
+        lockState();
+        scheduledSong = null;
+        unlockState();
+    }
+
+    /**
+     * Plays the whole seconds since the last synchronization. While nothing
+     * plays, the clock only moves along.
+     */
+    private void catchUp() {
+        long now = System.nanoTime();
+        if (peek() == null) {
+            lastSync = now;
+            return;
+        }
+        long seconds = (now - lastSync) / NANOS_PER_SECOND;
+        if (seconds > 0) {
+            play((int) Math.min(seconds, Integer.MAX_VALUE));
+            lastSync += seconds * NANOS_PER_SECOND;
+        }
+    }
+
+    /**
+     * Schedules the end of the next song unless it is already scheduled,
+     * which keeps the wheel out of operations that do not affect it.
+     */
+    private void scheduleSongEnd() {
+        Song next = peek();
+        if (next == scheduledSong && next != null
+                && next.getRemainingTime() == scheduledRemaining) {
+            return;
+        }
+        cancelSongEnd();
+        if (stopped || next == null) {
+            return;
+        }
+        scheduledSong = next;
+        scheduledRemaining = next.getRemainingTime();
+        long remaining = Math.max(scheduledRemaining, MIN_SONG_SECONDS) * NANOS_PER_SECOND;
+        songEnd = wheel.schedule(onSongEnd, remaining - (System.nanoTime() - lastSync));
+    }
+
+    private void cancelSongEnd() {
+        if (songEnd != null) {
+            songEnd.cancel();
+            songEnd = null;
+        }
+        scheduledSong = null;
+    }
+}
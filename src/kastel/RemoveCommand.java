@@ -4,23 +4,38 @@ package kastel;
  * Handles the "remove" command that deletes songs by id.
  * @author ujnaa
  */
-public class RemoveCommand implements Command {
-    private static final String PREFIX = "remove ";
-    private static final int PREFIX_LENGTH = 7;
+public class RemoveCommand implements Command<Integer> {
+    private static final String KEYWORD = "remove";
     private static final int NONE_REMOVED = 0;
     private static final String REMOVED_MESSAGE = "Removed ";
     private static final String REMOVED_SUFFIX = " songs.";
+
     @Override
-    public boolean matches(String input) {
-        return input.startsWith(PREFIX);
+    public String getKeyword() {
+        return KEYWORD;
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
-        int id = Integer.parseInt(input.substring(PREFIX_LENGTH).trim());
+    public Integer parse(String arguments) {
+        return arguments == null ? null : Integer.parseInt(arguments.trim());
+    }
+
+    @Override
+    public void execute(Integer id, Playlist playlist, Output output) {
         int removed = playlist.removeById(id);
         if (removed > NONE_REMOVED) {
-            System.out.println(REMOVED_MESSAGE + removed + REMOVED_SUFFIX);
+            output.println(REMOVED_MESSAGE + removed + REMOVED_SUFFIX);
         }
     }
+
+    @Override
+    public boolean addTo(Integer id, PlaylistBatch batch) {
+        batch.remove(id);
+        return true;
+    }
+
+    @Override
+    public boolean isMutating() {
+        return true;
+    }
 }
@@ -0,0 +1,65 @@
+package kastel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Handles the "save" command that writes a snapshot of the playlist to a
+ * file. Saving to the recovery snapshot of a journal truncates the journal,
+ * see {@link JournalCheckpoint}.
+ * @author ujnaa
+ */
+public class SaveCommand implements Command<Path> {
+    private static final String KEYWORD = "save";
+    private static final String WRITE_ERROR_MESSAGE = "Cannot write snapshot ";
+    private static final String JOURNAL_ERROR_MESSAGE = "Cannot truncate journal after ";
+    private final JournalCheckpoint checkpoint;
+
+    /**
+     * Creates the command for a processor without a journal.
+     */
+    public SaveCommand() {
+        this(null);
+    }
+
+    /**
+     * Creates the command.
+     *
+     * @param checkpoint the checkpoint of the processor's journal, or
+     *                   {@code null} without a journal
+     */
+    public SaveCommand(JournalCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public String getKeyword() {
+        return KEYWORD;
+    }
+
+    @Override
+    public Path parse(String arguments) {
+        return arguments == null ? null : Path.of(arguments.trim());
+    }
+
+    @Override
+    public void execute(Path path, Playlist playlist, Output output) {
+        try {
+            PlaylistSnapshot.save(playlist, path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(WRITE_ERROR_MESSAGE + path, e);
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.saved(playlist, path);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(JOURNAL_ERROR_MESSAGE + path, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean accessesFiles() {
+        return true;
+    }
+}
@@ -4,15 +4,23 @@ package kastel;
  * Handles the "skip" command that stops the current song.
  * @author ujnaa
  */
-public class SkipCommand implements Command {
+public class SkipCommand extends KeywordCommand {
     private static final String COMMAND = "skip";
-    @Override
-    public boolean matches(String input) {
-        return input.equals(COMMAND);
+
+    /**
+     * Creates the command.
+     */
+    public SkipCommand() {
+        super(COMMAND);
     }
 
     @Override
-    public void execute(String input, Playlist playlist) {
+    public void execute(String arguments, Playlist playlist, Output output) {
         playlist.skip();
     }
+
+    @Override
+    public boolean isMutating() {
+        return true;
+    }
 }
@@ -7,8 +7,12 @@ package kastel;
  * @author ujnaa
  */
 public class Song {
-    private static final String PEEK_FORMAT = "%05d:%s:%s:%d:%d";
-    private static final String LIST_FORMAT = "%05d:%s:%s:%d";
+    private static final char SEPARATOR = ':';
+    private static final char PADDING = '0';
+    private static final char MINUS = '-';
+    /** minimum width of a formatted id, including a sign */
+    private static final int ID_WIDTH = 5;
+    private static final int RADIX = 10;
     private final int id;
     private final String artist;
     private final String title;
@@ -105,14 +109,7 @@ public class Song {
      */
 
     public String toPeekString() {
-        return String.format(
-                PEEK_FORMAT,
-                id,
-                artist,
-                title,
-                length,
-                remainingTime
-        );
+        return appendPeekTo(new StringBuilder()).toString();
     }
 
     /**
@@ -121,7 +118,73 @@ public class Song {
      * @return formatted song string without remaining time
      */
     public String toListString() {
-        return String.format(LIST_FORMAT, id, artist, title, length);
+        return appendListTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the text of {@link #toPeekString()} to the given builder.
+     *
+     * @param builder the builder to append to
+     * @return the given builder
+     */
+    public StringBuilder appendPeekTo(StringBuilder builder) {
+        return appendListTo(builder).append(SEPARATOR).append(remainingTime);
+    }
+
+    /**
+     * Appends the text of {@link #toListString()} to the given builder.
+     *
+     * @param builder the builder to append to
+     * @return the given builder
+     */
+    public StringBuilder appendListTo(StringBuilder builder) {
+        return appendListTo(builder, id, artist, title, length);
+    }
+
+    /**
+     * Formats the given song fields like {@link #toListString()}.
+     *
+     * @param id the song identifier
+     * @param artist the artist of the song
+     * @param title the title of the song
+     * @param length the duration in seconds
+     * @return formatted song string without remaining time
+     */
+    public static String toListString(int id, String artist, String title, int length) {
+        return appendListTo(new StringBuilder(), id, artist, title, length).toString();
+    }
+
+    /**
+     * Appends the given song fields formatted like {@link #toListString()}
+     * to the builder: the id padded with zeros to five characters, followed
+     * by artist, title and length, separated by colons.
+     *
+     * @param builder the builder to append to
+     * @param id the song identifier
+     * @param artist the artist of the song
+     * @param title the title of the song
+     * @param length the duration in seconds
+     * @return the given builder
+     */
+    public static StringBuilder appendListTo(StringBuilder builder, int id, String artist,
+                                             String title, int length) {
+        long value = id;
+        int width = ID_WIDTH;
+        if (value < 0) {
+            builder.append(MINUS);
+            value = -value;
+            width--;
+        }
+        for (long limit = RADIX; limit <= value && width > 1; limit *= RADIX) {
+            width--;
+        }
+        for (int i = 1; i < width; i++) {
+            builder.append(PADDING);
+        }
+        return builder.append(value).append(SEPARATOR)
+                .append(artist).append(SEPARATOR)
+                .append(title).append(SEPARATOR)
+                .append(length);
     }
 
     /**
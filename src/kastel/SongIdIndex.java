@@ -0,0 +1,346 @@
+package kastel;
+
+/**
+ * Primitive multimap from song ids to the tickets of the queue entries that
+ * hold them. A ticket is the logical, never reused position of an entry in
+ * a {@link SongQueue}. The tickets of one id are kept in ascending order, so
+ * the entry at the front of the queue is always the first ticket of its id.
+ * <p>
+ * Ids are stored in an open addressing table with linear probing. Every
+ * table slot occupies two neighbouring longs, a header holding the id and
+ * flags followed by a ticket, so a lookup touches a single cache line. Ids
+ * that occur only once keep their ticket inline; only repeated ids allocate
+ * a {@link TicketList}.
+ * <p>
+ * The table doubles once it is half full. Removing ids never shrinks it by
+ * itself; the owner calls {@link #shrinkIfSparse()} after a series of
+ * removals, so draining a queue rehashes at most once.
+ * @author ujnaa
+ */
+public class SongIdIndex {
+    /** result of {@link #firstTicket(int)} for ids that are not indexed */
+    public static final long NO_TICKET = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EXPANSION_FACTOR = 2;
+    private static final int LOAD_FACTOR_DIVISOR = 2;
+    private static final int SHRINK_DIVISOR = 8;
+    private static final int EMPTY = 0;
+    private static final int SLOT_WIDTH = 2;
+    private static final long KEY_MASK = 0xFFFFFFFFL;
+    private static final long USED = 1L << Integer.SIZE;
+    private static final long REPEATED = USED << 1;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    private static final int HASH_SHIFT = 16;
+
+    private long[] table;  // table[2 * slot] = header, table[2 * slot + 1] = single ticket
+    private TicketList[] repeatedTickets;
+    private int capacity;
+    private int size;
+
+    /**
+     * Creates an empty index.
+     */
+    public SongIdIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Registers a ticket that is larger than every other ticket of the id.
+     *
+     * @param id the song id
+     * @param ticket the ticket of the new entry
+     */
+    public void addLast(int id, long ticket) {
+        int slot = findOrInsert(id, ticket);
+        if (slot >= EMPTY) {
+            promote(slot).addLast(ticket);
+        }
+    }
+
+    /**
+     * Registers a ticket that is smaller than every other ticket of the id.
+     *
+     * @param id the song id
+     * @param ticket the ticket of the new entry
+     */
+    public void addFirst(int id, long ticket) {
+        int slot = findOrInsert(id, ticket);
+        if (slot >= EMPTY) {
+            promote(slot).addFirst(ticket);
+        }
+    }
+
+    /**
+     * Gets the smallest ticket of the given id.
+     *
+     * @param id the song id
+     * @return the ticket, or {@link #NO_TICKET} if the id is not indexed
+     */
+    public long firstTicket(int id) {
+        int slot = find(id);
+        if (slot < EMPTY) {
+            return NO_TICKET;
+        }
+        return (table[SLOT_WIDTH * slot] & REPEATED) == 0
+                ? table[SLOT_WIDTH * slot + 1]
+                : repeatedTickets[slot].get(0);
+    }
+
+    /**
+     * Drops the smallest ticket of the given id.
+     *
+     * @param id the song id
+     */
+    public void removeFirst(int id) {
+        int slot = find(id);
+        if (slot < EMPTY) {
+            return;
+        }
+        if ((table[SLOT_WIDTH * slot] & REPEATED) == 0) {
+            delete(slot);
+            return;
+        }
+        TicketList list = repeatedTickets[slot];
+        list.removeFirst();
+        if (list.size() == 1) {
+            table[SLOT_WIDTH * slot] &= ~REPEATED;
+            table[SLOT_WIDTH * slot + 1] = list.get(0);
+            repeatedTickets[slot] = null;
+        }
+    }
+
+    /**
+     * Removes the id from the index and returns all of its tickets in
+     * ascending order.
+     *
+     * @param id the song id
+     * @return the tickets of the id, or an empty array if it is not indexed
+     */
+    public long[] removeAll(int id) {
+        int slot = find(id);
+        if (slot < EMPTY) {
+            return new long[0];
+        }
+        long[] tickets = (table[SLOT_WIDTH * slot] & REPEATED) == 0
+                ? new long[]{table[SLOT_WIDTH * slot + 1]}
+                : repeatedTickets[slot].toArray();
+        delete(slot);
+        return tickets;
+    }
+
+    /**
+     * Removes every id from the index.
+     */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Halves the table as long as less than an eighth of it is used, so that
+     * it is at most a quarter full afterwards.
+     */
+    public void shrinkIfSparse() {
+        int newCapacity = capacity;
+        while (newCapacity > INITIAL_CAPACITY && size * SHRINK_DIVISOR < newCapacity) {
+            newCapacity /= EXPANSION_FACTOR;
+        }
+        if (newCapacity < capacity) {
+            resize(newCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that keeps it at most half
+     * full.
+     */
+    public void trimToSize() {
+        int newCapacity = INITIAL_CAPACITY;
+        while (size * LOAD_FACTOR_DIVISOR > newCapacity) {
+            newCapacity *= EXPANSION_FACTOR;
+        }
+        if (newCapacity < capacity) {
+            resize(newCapacity);
+        }
+    }
+
+    /**
+     * Looks up the slot of the id, inserting it with the given ticket if it
+     * is missing.
+     *
+     * @return the slot of an existing id, or -1 if the id was inserted
+     */
+    private int findOrInsert(int id, long ticket) {
+        int mask = capacity - 1;
+        int slot = hash(id) & mask;
+        long header = table[SLOT_WIDTH * slot];
+        while (header != EMPTY) {
+            if ((int) header == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            header = table[SLOT_WIDTH * slot];
+        }
+        table[SLOT_WIDTH * slot] = USED | (id & KEY_MASK);
+        table[SLOT_WIDTH * slot + 1] = ticket;
+        size++;
+        if (size * LOAD_FACTOR_DIVISOR > capacity) {
+            resize(capacity * EXPANSION_FACTOR);
+        }
+        return -1;
+    }
+
+    private int find(int id) {
+        int mask = capacity - 1;
+        int slot = hash(id) & mask;
+        long header = table[SLOT_WIDTH * slot];
+        while (header != EMPTY) {
+            if ((int) header == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            header = table[SLOT_WIDTH * slot];
+        }
+        return -1;
+    }
+
+    private TicketList promote(int slot) {
+        if ((table[SLOT_WIDTH * slot] & REPEATED) != 0) {
+            return repeatedTickets[slot];
+        }
+        if (repeatedTickets == null) {
+            repeatedTickets = new TicketList[capacity];
+        }
+        TicketList list = new TicketList();
+        list.addLast(table[SLOT_WIDTH * slot + 1]);
+        repeatedTickets[slot] = list;
+        table[SLOT_WIDTH * slot] |= REPEATED;
+        return list;
+    }
+
+    /**
+     * Deletes a slot and shifts following entries of the probe chain back so
+     * that lookups never need tombstones.
+     */
+    private void delete(int slot) {
+        int mask = capacity - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (table[SLOT_WIDTH * next] != EMPTY) {
+            int home = hash((int) table[SLOT_WIDTH * next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                move(next, gap);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[SLOT_WIDTH * gap] = EMPTY;
+        if (repeatedTickets != null) {
+            repeatedTickets[gap] = null;
+        }
+        size--;
+    }
+
+    private void move(int from, int to) {
+        table[SLOT_WIDTH * to] = table[SLOT_WIDTH * from];
+        table[SLOT_WIDTH * to + 1] = table[SLOT_WIDTH * from + 1];
+        if (repeatedTickets != null) {
+            repeatedTickets[to] = repeatedTickets[from];
+        }
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldTable = table;
+        TicketList[] oldRepeated = repeatedTickets;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        if (oldRepeated != null) {
+            repeatedTickets = new TicketList[capacity];
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long header = oldTable[SLOT_WIDTH * i];
+            if (header != EMPTY) {
+                int slot = hash((int) header) & mask;
+                while (table[SLOT_WIDTH * slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[SLOT_WIDTH * slot] = header;
+                table[SLOT_WIDTH * slot + 1] = oldTable[SLOT_WIDTH * i + 1];
+                if (oldRepeated != null) {
+                    repeatedTickets[slot] = oldRepeated[i];
+                }
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        table = new long[SLOT_WIDTH * newCapacity];
+        repeatedTickets = null;
+        size = EMPTY;
+    }
+
+    private static int hash(int id) {
+        int h = id * HASH_MULTIPLIER;
+        return h ^ (h >>> HASH_SHIFT);
+    }
+
+    /**
+     * Sorted deque of the tickets of a repeated id.
+     */
+    private static final class TicketList {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private long[] tickets = new long[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long get(int index) {
+            return tickets[(head + index) & (tickets.length - 1)];
+        }
+
+        void addLast(long ticket) {
+            if (size == tickets.length) {
+                grow();
+            }
+            tickets[(head + size) & (tickets.length - 1)] = ticket;
+            size++;
+        }
+
+        void addFirst(long ticket) {
+            if (size == tickets.length) {
+                grow();
+            }
+            head = (head - 1) & (tickets.length - 1);
+            tickets[head] = ticket;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) & (tickets.length - 1);
+            size--;
+        }
+
+        long[] toArray() {
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = get(i);
+            }
+            return result;
+        }
+
+        private void grow() {
+            long[] newTickets = new long[tickets.length * EXPANSION_FACTOR];
+            for (int i = 0; i < size; i++) {
+                newTickets[i] = get(i);
+            }
+            tickets = newTickets;
+            head = 0;
+        }
+    }
+}
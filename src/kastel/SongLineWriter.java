@@ -0,0 +1,27 @@
+package kastel;
+
+/**
+ * Writes every visited song as one list line to an {@link Output}. The line
+ * is formatted into a reused buffer, so no strings are created per song.
+ * @author ujnaa
+ */
+public class SongLineWriter implements SongVisitor {
+    private final Output output;
+    private final StringBuilder line;
+
+    /**
+     * Creates a song writer for the given output.
+     *
+     * @param output the output receiving the lines
+     */
+    public SongLineWriter(Output output) {
+        this.output = output;
+        this.line = new StringBuilder();
+    }
+
+    @Override
+    public void visit(int id, String artist, String title, int length) {
+        line.setLength(0);
+        output.println(Song.appendListTo(line, id, artist, title, length));
+    }
+}
@@ -4,11 +4,29 @@ package kastel;
  * Utility for converting text definitions into {@link Song} objects.
  * Command implementations rely on this class to validate the expected
  * input formats.
+ * <p>
+ * The input is scanned once without splitting it: the separators are
+ * located in place and numbers are parsed directly from the characters.
+ * Invalid input is reported by a {@code null} result of the {@code tryParse}
+ * methods instead of exceptions.
+ * <p>
+ * Catalogs repeat the same artists and titles many times, so both are
+ * looked up in a bounded {@link StringPool} and songs with equal fields
+ * share the same strings.
  * @author ujnaa
  */
 public final class SongParser {
     private static final String INVALID_SONG_FORMAT = "Invalid song format";
     private static final int DEFAULT_PRIORITY = 0;
+    private static final char SEPARATOR = ':';
+    private static final int FIELDS_WITH_PRIORITY = 5;
+    private static final int FIELDS_WITHOUT_PRIORITY = 4;
+    private static final int RADIX = 10;
+    /** result of {@link #parseInt(CharSequence, int, int)} for invalid numbers */
+    private static final long INVALID_NUMBER = Long.MIN_VALUE;
+    private static final int POOL_CAPACITY = 1 << 16;
+    private static final StringPool ARTISTS = new StringPool(POOL_CAPACITY);
+    private static final StringPool TITLES = new StringPool(POOL_CAPACITY);
 
     private SongParser() {
     }
@@ -24,20 +42,7 @@ public final class SongParser {
      */
 
     public static Song parseWithPriority(String input) {
-        String[] parts = input.split(":", -1);
-        if (parts.length != 5) {
-            throw new IllegalArgumentException(INVALID_SONG_FORMAT);
-        }
-        try {
-            int id = Integer.parseInt(parts[0]);
-            String artist = parts[1].trim();
-            String title = parts[2].trim();
-            int length = Integer.parseInt(parts[3]);
-            int priority = Integer.parseInt(parts[4]);
-            return new Song(id, artist, title, length, priority);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(INVALID_SONG_FORMAT);
-        }
+        return requireValid(tryParseWithPriority(input));
     }
 
     /**
@@ -51,18 +56,130 @@ public final class SongParser {
      * @throws IllegalArgumentException if the input does not match the format
      */
     public static Song parseWithoutPriority(String input) {
-        String[] parts = input.split(":", -1);
-        if (parts.length != 4) {
+        return requireValid(tryParseWithoutPriority(input));
+    }
+
+    /**
+     * Parses a song definition that includes a priority like
+     * {@link #parseWithPriority(String)}.
+     *
+     * @param input the text to parse
+     * @return the resulting {@link Song}, or {@code null} if the input does not
+     *         match the format
+     */
+    public static Song tryParseWithPriority(CharSequence input) {
+        return tryParse(input, 0, input.length(), FIELDS_WITH_PRIORITY);
+    }
+
+    /**
+     * Parses a song definition without a priority like
+     * {@link #parseWithoutPriority(String)}.
+     *
+     * @param input the text to parse
+     * @return the resulting {@link Song}, or {@code null} if the input does not
+     *         match the format
+     */
+    public static Song tryParseWithoutPriority(CharSequence input) {
+        return tryParse(input, 0, input.length(), FIELDS_WITHOUT_PRIORITY);
+    }
+
+    private static Song requireValid(Song song) {
+        if (song == null) {
             throw new IllegalArgumentException(INVALID_SONG_FORMAT);
         }
-        try {
-            int id = Integer.parseInt(parts[0]);
-            String artist = parts[1].trim();
-            String title = parts[2].trim();
-            int length = Integer.parseInt(parts[3]);
-            return new Song(id, artist, title, length, DEFAULT_PRIORITY);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(INVALID_SONG_FORMAT);
+        return song;
+    }
+
+    /**
+     * Parses the characters {@code [from, to)} as a song with the given
+     * amount of colon separated fields.
+     */
+    private static Song tryParse(CharSequence input, int from, int to, int fields) {
+        int artistStart = indexOfSeparator(input, from, to) + 1;
+        int titleStart = indexOfSeparator(input, artistStart, to) + 1;
+        int lengthStart = indexOfSeparator(input, titleStart, to) + 1;
+        if (artistStart == 0 || titleStart == 0 || lengthStart == 0) {
+            return null;
+        }
+        int lengthEnd = indexOfSeparator(input, lengthStart, to);
+        int priorityEnd = to;
+        if (fields == FIELDS_WITH_PRIORITY) {
+            if (lengthEnd < 0 || indexOfSeparator(input, lengthEnd + 1, to) >= 0) {
+                return null;
+            }
+        } else if (lengthEnd >= 0) {
+            return null;
+        } else {
+            lengthEnd = to;
+        }
+
+        long id = parseInt(input, from, artistStart - 1);
+        long length = parseInt(input, lengthStart, lengthEnd);
+        long priority = fields == FIELDS_WITH_PRIORITY
+                ? parseInt(input, lengthEnd + 1, priorityEnd)
+                : DEFAULT_PRIORITY;
+        if (id == INVALID_NUMBER || length == INVALID_NUMBER || priority == INVALID_NUMBER) {
+            return null;
+        }
+        String artist = trimmed(ARTISTS, input, artistStart, titleStart - 1);
+        String title = trimmed(TITLES, input, titleStart, lengthStart - 1);
+        return new Song((int) id, artist, title, (int) length, (int) priority);
+    }
+
+    private static int indexOfSeparator(CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the characters {@code [from, to)} without leading and trailing
+     * whitespace as defined by {@link String#trim()}, taken from the pool.
+     */
+    private static String trimmed(StringPool pool, CharSequence input, int from, int to) {
+        int start = from;
+        int end = to;
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return pool.intern(input, start, end);
+    }
+
+    /**
+     * Parses the characters {@code [from, to)} like
+     * {@link Integer#parseInt(String)}.
+     *
+     * @return the number, or {@link #INVALID_NUMBER} if the text is not a
+     *         valid {@code int}
+     */
+    private static long parseInt(CharSequence input, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+            negative = input.charAt(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            return INVALID_NUMBER;
+        }
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = Character.digit(input.charAt(i), RADIX);
+            if (digit < 0) {
+                return INVALID_NUMBER;
+            }
+            value = value * RADIX + digit;
+            if (value > limit) {
+                return INVALID_NUMBER;
+            }
         }
+        return negative ? -value : value;
     }
 }
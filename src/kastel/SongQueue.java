@@ -0,0 +1,609 @@
+package kastel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Growable circular deque of songs used for a single priority level of the
+ * playlist. Pushing to either end and removing from the front run in
+ * constant (amortized) time.
+ * <p>
+ * Every entry gets a ticket, its logical position that is never reused:
+ * entries pushed to the back receive increasing tickets, entries pushed to
+ * the front decreasing ones. A {@link SongIdIndex} maps ids to tickets so
+ * that removing an id only touches the matching entries. Removed entries
+ * leave an empty slot behind that is skipped when the front advances; once
+ * empty slots outnumber the songs the queue is compacted.
+ * <p>
+ * The backing storage doubles when it is full and halves once at most a
+ * quarter of it is occupied, so a queue that drains after a burst returns
+ * its memory while alternating additions and removals never resize it
+ * repeatedly. {@link #trimToSize()} shrinks it as far as possible.
+ * <p>
+ * A {@link FenwickTree} over the slots holds the remaining play time of
+ * every entry, which lets playback find in logarithmic time how many songs
+ * finish within a given number of seconds. Slots in front of the head keep
+ * stale weights; they are outside every query and corrected when reused.
+ * <p>
+ * A second tree marks the slots of removed entries that are still occupied.
+ * It translates between the position of a song among the queued songs and
+ * its slot, so paging through the queue and locating an id take
+ * logarithmic time. The tree is only needed while removed entries exist,
+ * so it is built by the first such query and maintained from then on;
+ * queues that are never queried do not pay for it.
+ * @author ujnaa
+ */
+public class SongQueue implements Iterable<Song> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EXPANSION_FACTOR = 2;
+    private static final int INITIAL_INDEX = 0;
+    /** queues with fewer occupied slots are never compacted */
+    private static final int MIN_COMPACTION_SPAN = 64;
+    /** the storage halves once at most 1 / SHRINK_DIVISOR of it is occupied */
+    private static final int SHRINK_DIVISOR = 4;
+
+    private final SongIdIndex index;
+    private Song[] elements;
+    private int[] weights;  // weights[slot] = play time stored in the tree
+    private FenwickTree playTimes;
+    private FenwickTree holes;  // 1 for removed entries inside the span, null until queried
+    private int negativeCount;
+    private int head;
+    private int span;  // occupied slots including removed entries
+    private int size;  // songs still queued
+    private long headTicket;
+
+    /**
+     * Creates an empty queue.
+     */
+    public SongQueue() {
+        index = new SongIdIndex();
+        elements = new Song[INITIAL_CAPACITY];
+        weights = new int[INITIAL_CAPACITY];
+        playTimes = new FenwickTree(weights);
+        head = INITIAL_INDEX;
+        span = INITIAL_INDEX;
+        size = INITIAL_INDEX;
+    }
+
+    /**
+     * Gets the number of queued songs.
+     *
+     * @return the queue size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of songs the backing storage can hold without growing,
+     * including the slots of removed entries.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Checks whether the queue holds no songs.
+     *
+     * @return {@code true} if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == INITIAL_INDEX;
+    }
+
+    /**
+     * Makes room for the given amount of additional songs, so that adding
+     * them grows the backing storage at most once.
+     *
+     * @param additional amount of songs that will be added
+     */
+    public void ensureCapacity(int additional) {
+        while (span + additional > elements.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Appends a song to the end of the queue.
+     *
+     * @param song the song to append
+     */
+    public void addLast(Song song) {
+        if (span == elements.length) {
+            grow();
+        }
+        store(slot(span), song);
+        index.addLast(song.getId(), headTicket + span);
+        span++;
+        size++;
+    }
+
+    /**
+     * Appends the songs {@code songs[from, from + count)} in array order. The
+     * backing storage grows at most once and the play time tree is updated
+     * for the whole range at once in {@code O(count + log n)} time.
+     *
+     * @param songs the songs to append
+     * @param from index of the first song to append
+     * @param count amount of songs to append
+     */
+    public void appendAll(Song[] songs, int from, int count) {
+        ensureCapacity(count);
+        int firstSlot = slot(span);
+        long[] deltas = new long[count];
+        for (int i = 0; i < count; i++) {
+            Song song = songs[from + i];
+            int slot = slot(span);
+            int weight = song.getRemainingTime();
+            if (weight < INITIAL_INDEX) {
+                negativeCount++;
+            }
+            deltas[i] = (long) weight - weights[slot];
+            elements[slot] = song;
+            weights[slot] = weight;
+            index.addLast(song.getId(), headTicket + span);
+            span++;
+        }
+        size += count;
+        int firstPart = Math.min(count, elements.length - firstSlot);
+        playTimes.addRange(firstSlot, deltas, INITIAL_INDEX, firstPart);
+        playTimes.addRange(INITIAL_INDEX, deltas, firstPart, count - firstPart);
+    }
+
+    /**
+     * Inserts a song in front of all other queued songs.
+     *
+     * @param song the song to insert
+     */
+    public void addFirst(Song song) {
+        if (span == elements.length) {
+            grow();
+        }
+        head = (head - 1) & (elements.length - 1);
+        headTicket--;
+        store(head, song);
+        index.addFirst(song.getId(), headTicket);
+        span++;
+        size++;
+    }
+
+    /**
+     * Returns the first song without removing it.
+     *
+     * @return the first song, or {@code null} if the queue is empty
+     */
+    public Song peekFirst() {
+        return elements[head];
+    }
+
+    /**
+     * Removes and returns the first song of the queue.
+     *
+     * @return the removed song, or {@code null} if the queue is empty
+     */
+    public Song pollFirst() {
+        Song song = elements[head];
+        if (song != null) {
+            index.removeFirst(song.getId());
+            release(head);
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+            headTicket++;
+            span--;
+            size--;
+            skipRemovedFront();
+            shrinkIfSparse();
+        }
+        return song;
+    }
+
+    /**
+     * Counts how many leading entries playback would finish within the given
+     * time when starting with the first song. A song finishes if the time is
+     * not used up before it starts; songs without play time that follow the
+     * exact end of the given time are not included.
+     *
+     * @param seconds the available play time, must be positive
+     * @return the amount of leading slots, including removed entries, whose
+     *         songs all finish, or {@code 0} if this cannot be answered
+     *         because a song has a negative length
+     */
+    public int finishingSpan(long seconds) {
+        if (negativeCount > INITIAL_INDEX) {
+            return INITIAL_INDEX;
+        }
+        int firstEnd = Math.min(head + span, elements.length);
+        long firstSum = playTimes.sum(head, firstEnd);
+        if (firstSum >= seconds) {
+            return spanUpTo(head, seconds, INITIAL_INDEX);
+        }
+        int secondEnd = head + span - elements.length;
+        if (secondEnd <= INITIAL_INDEX || playTimes.prefixSum(secondEnd) < seconds - firstSum) {
+            return span;
+        }
+        return spanUpTo(INITIAL_INDEX, seconds - firstSum, firstEnd - head);
+    }
+
+    /**
+     * Finds the end of the finishing entries inside one contiguous segment
+     * that starts at the given slot and holds enough play time.
+     */
+    private int spanUpTo(int start, long seconds, int offsetOfStart) {
+        long target = playTimes.prefixSum(start) + seconds;
+        int last = playTimes.lowerBound(target);
+        int offset = offsetOfStart + last - start;
+        return playTimes.prefixSum(last + 1) == target ? offset + 1 : offset;
+    }
+
+    /**
+     * Removes the entries of the given leading slots and appends their songs
+     * to the history in queue order.
+     *
+     * @param slots amount of leading slots to remove, as returned by
+     *              {@link #finishingSpan(long)}
+     * @param history the log receiving the songs
+     * @return the total play time of the removed songs
+     */
+    public long pollSpan(int slots, HistoryLog history) {
+        long playTime = INITIAL_INDEX;
+        int removed = INITIAL_INDEX;
+        long[] deltas = new long[slots];
+        for (int offset = 0; offset < slots; offset++) {
+            int slot = slot(offset);
+            Song song = elements[slot];
+            if (song != null) {
+                index.removeFirst(song.getId());
+                int weight = weights[slot];
+                if (weight < INITIAL_INDEX) {
+                    negativeCount--;
+                }
+                deltas[offset] = -weight;
+                weights[slot] = INITIAL_INDEX;
+                playTime += weight;
+                history.append(song);
+                elements[slot] = null;
+                removed++;
+            } else {
+                countHole(slot, -1);
+            }
+        }
+        int firstPart = Math.min(slots, elements.length - head);
+        playTimes.addRange(head, deltas, INITIAL_INDEX, firstPart);
+        playTimes.addRange(INITIAL_INDEX, deltas, firstPart, slots - firstPart);
+        head = slot(slots);
+        headTicket += slots;
+        span -= slots;
+        size -= removed;
+        skipRemovedFront();
+        shrinkIfSparse();
+        return playTime;
+    }
+
+    /**
+     * Removes every song with the given id while keeping the order of the
+     * remaining songs. Only the matching entries are visited.
+     *
+     * @param id identifier of the songs to remove
+     * @return amount of removed songs
+     */
+    public int removeById(int id) {
+        long[] tickets = index.removeAll(id);
+        for (long ticket : tickets) {
+            int slot = slot((int) (ticket - headTicket));
+            release(slot);
+            store(slot, null);
+            countHole(slot, 1);
+        }
+        size -= tickets.length;
+        skipRemovedFront();
+        while (span > INITIAL_INDEX && elements[slot(span - 1)] == null) {
+            countHole(slot(span - 1), -1);
+            span--;
+        }
+        if (span > MIN_COMPACTION_SPAN && span - size > size) {
+            compact(elements.length);
+        }
+        shrinkIfSparse();
+        return tickets.length;
+    }
+
+    /**
+     * Drops the slots of removed entries and shrinks the backing storage and
+     * the id index to the smallest capacity that holds the queued songs.
+     */
+    public void trimToSize() {
+        int capacity = Math.max(INITIAL_CAPACITY,
+                Integer.highestOneBit(Math.max(size, 1) - 1) * EXPANSION_FACTOR);
+        if (span > size) {
+            compact(capacity);
+        } else if (capacity < elements.length) {
+            resize(capacity);
+        }
+        index.trimToSize();
+    }
+
+    /**
+     * Gets the position of the first song with the given id among the
+     * queued songs.
+     *
+     * @param id the song id
+     * @return the position counted from the front, or {@code -1} if no song
+     *         with the id is queued
+     */
+    public int positionOf(int id) {
+        long ticket = index.firstTicket(id);
+        if (ticket == SongIdIndex.NO_TICKET) {
+            return -1;
+        }
+        int offset = (int) (ticket - headTicket);
+        return offset - holesBefore(offset);
+    }
+
+    /**
+     * Sums the remaining play time of all queued songs in logarithmic time.
+     *
+     * @return the total play time in seconds
+     */
+    public long playTime() {
+        return leadingPlayTime(span);
+    }
+
+    /**
+     * Sums the remaining play time of the songs in front of the given
+     * position in logarithmic time.
+     *
+     * @param position position of a song, at most {@link #size()}
+     * @return the play time in seconds until the song would start
+     */
+    public long playTimeBefore(int position) {
+        return leadingPlayTime(offsetOf(position));
+    }
+
+    /**
+     * Iterates over the queued songs from front to back.
+     *
+     * @return an iterator over the queued songs
+     */
+    @Override
+    public Iterator<Song> iterator() {
+        return iterator(INITIAL_INDEX);
+    }
+
+    /**
+     * Iterates over the queued songs from front to back, starting with the
+     * song at the given position. Finding the start and skipping removed
+     * entries take logarithmic time.
+     *
+     * @param position position of the first song, at most {@link #size()}
+     * @return an iterator over the queued songs from the position on
+     */
+    public Iterator<Song> iterator(int position) {
+        return new Iterator<>() {
+            private int offset = offsetOf(position);
+            private int remaining = size - position;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > INITIAL_INDEX;
+            }
+
+            @Override
+            public Song next() {
+                if (remaining == INITIAL_INDEX) {
+                    throw new NoSuchElementException();
+                }
+                Song song = elements[slot(offset)];
+                if (song == null && holes != null) {
+                    offset = offsetOf(size - remaining);
+                    song = elements[slot(offset)];
+                }
+                while (song == null) {
+                    song = elements[slot(++offset)];
+                }
+                offset++;
+                remaining--;
+                return song;
+            }
+        };
+    }
+
+    private int slot(int offset) {
+        return (head + offset) & (elements.length - 1);
+    }
+
+    /**
+     * Sums the play time in the leading slots {@code [0, offset)}. Removed
+     * entries have no play time.
+     */
+    private long leadingPlayTime(int offset) {
+        int end = head + offset;
+        if (end <= elements.length) {
+            return playTimes.sum(head, end);
+        }
+        return playTimes.sum(head, elements.length) + playTimes.prefixSum(end - elements.length);
+    }
+
+    /**
+     * Counts the removed entries in the leading slots {@code [0, offset)}.
+     */
+    private int holesBefore(int offset) {
+        if (span == size) {
+            return INITIAL_INDEX;
+        }
+        FenwickTree removed = holes();
+        int end = head + offset;
+        if (end <= elements.length) {
+            return (int) removed.sum(head, end);
+        }
+        return (int) (removed.sum(head, elements.length)
+                + removed.prefixSum(end - elements.length));
+    }
+
+    /**
+     * Finds the offset of the slot holding the song at the given position.
+     * Positions from the size of the queue on map to the end of the span.
+     */
+    private int offsetOf(int position) {
+        if (span == size || position == INITIAL_INDEX) {
+            return position;
+        }
+        if (position >= size) {
+            return span;
+        }
+        FenwickTree removed = holes();
+        int firstEnd = Math.min(head + span, elements.length);
+        int firstSongs = firstEnd - head - (int) removed.sum(head, firstEnd);
+        if (position < firstSongs) {
+            long target = head - removed.prefixSum(head) + position + 1;
+            return removed.lowerBoundOfZeros(target) - head;
+        }
+        return firstEnd - head + removed.lowerBoundOfZeros(position - firstSongs + 1);
+    }
+
+    /**
+     * Records that a removed entry starts or stops occupying a slot, if the
+     * tree of removed entries has been built.
+     */
+    private void countHole(int slot, int delta) {
+        if (holes != null) {
+            holes.add(slot, delta);
+        }
+    }
+
+    /**
+     * Gets the tree of removed entries, building it from the slots if it
+     * does not exist yet.
+     */
+    private FenwickTree holes() {
+        if (holes == null) {
+            int[] removed = new int[elements.length];
+            for (int offset = 0; offset < span; offset++) {
+                if (elements[slot(offset)] == null) {
+                    removed[slot(offset)] = 1;
+                }
+            }
+            holes = new FenwickTree(removed);
+        }
+        return holes;
+    }
+
+    /**
+     * Puts a song, or {@code null} for a removed entry, into a slot and
+     * updates the play time tree.
+     */
+    private void store(int slot, Song song) {
+        int weight = INITIAL_INDEX;
+        if (song != null) {
+            weight = song.getRemainingTime();
+            if (weight < INITIAL_INDEX) {
+                negativeCount++;
+            }
+        }
+        elements[slot] = song;
+        if (weights[slot] != weight) {
+            playTimes.add(slot, (long) weight - weights[slot]);
+            weights[slot] = weight;
+        }
+    }
+
+    /**
+     * Updates the bookkeeping for a song that leaves the given slot and
+     * clears its play time from the tree. The tree only ever holds the play
+     * times of queued songs, so its prefix sums stay monotone whenever no
+     * queued song has a negative length.
+     */
+    private void release(int slot) {
+        int weight = weights[slot];
+        if (weight < INITIAL_INDEX) {
+            negativeCount--;
+        }
+        if (weight != INITIAL_INDEX) {
+            playTimes.add(slot, -weight);
+            weights[slot] = INITIAL_INDEX;
+        }
+    }
+
+    /**
+     * Advances the front past removed entries so that the head slot always
+     * holds a song unless the queue is empty.
+     */
+    private void skipRemovedFront() {
+        while (span > INITIAL_INDEX && elements[head] == null) {
+            countHole(head, -1);
+            head = (head + 1) & (elements.length - 1);
+            headTicket++;
+            span--;
+        }
+    }
+
+    private void grow() {
+        resize(elements.length * EXPANSION_FACTOR);
+    }
+
+    /**
+     * Halves the capacity as long as the occupied slots fit into a quarter
+     * of it. Afterwards the queue is at most half full, so it takes at least
+     * as many additions to grow again as removals happened since the storage
+     * last had this size. The id index is shrunk along with the storage, so
+     * it never outgrows the storage by more than a constant factor.
+     */
+    private void shrinkIfSparse() {
+        if (elements.length <= INITIAL_CAPACITY || span > elements.length / SHRINK_DIVISOR) {
+            return;
+        }
+        int capacity = elements.length / EXPANSION_FACTOR;
+        while (capacity > INITIAL_CAPACITY && span <= capacity / SHRINK_DIVISOR) {
+            capacity /= EXPANSION_FACTOR;
+        }
+        resize(capacity);
+        index.shrinkIfSparse();
+    }
+
+    /**
+     * Moves the occupied slots to the start of an array of the given
+     * capacity. Tickets stay valid because the front keeps its ticket.
+     */
+    private void resize(int capacity) {
+        Song[] newElements = new Song[capacity];
+        int[] newWeights = new int[capacity];
+        int firstPart = Math.min(span, elements.length - head);
+        System.arraycopy(elements, head, newElements, INITIAL_INDEX, firstPart);
+        System.arraycopy(elements, INITIAL_INDEX, newElements, firstPart, span - firstPart);
+        System.arraycopy(weights, head, newWeights, INITIAL_INDEX, firstPart);
+        System.arraycopy(weights, INITIAL_INDEX, newWeights, firstPart, span - firstPart);
+        elements = newElements;
+        weights = newWeights;
+        playTimes = new FenwickTree(weights);
+        holes = null;
+        head = INITIAL_INDEX;
+    }
+
+    /**
+     * Moves all songs next to each other into an array of the given capacity
+     * and rebuilds the id index with fresh tickets.
+     */
+    private void compact(int capacity) {
+        Song[] newElements = new Song[capacity];
+        int[] newWeights = new int[capacity];
+        int count = INITIAL_INDEX;
+        index.clear();
+        for (int offset = 0; offset < span; offset++) {
+            int slot = slot(offset);
+            Song song = elements[slot];
+            if (song != null) {
+                index.addLast(song.getId(), headTicket + count);
+                newWeights[count] = weights[slot];
+                newElements[count++] = song;
+            }
+        }
+        elements = newElements;
+        weights = newWeights;
+        playTimes = new FenwickTree(weights);
+        holes = null;
+        head = INITIAL_INDEX;
+        span = count;
+    }
+}
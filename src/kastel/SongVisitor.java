@@ -0,0 +1,17 @@
+package kastel;
+
+/**
+ * Receives the fields of songs while a collection of songs is traversed.
+ * @author ujnaa
+ */
+public interface SongVisitor {
+    /**
+     * Handles a single song.
+     *
+     * @param id the song identifier
+     * @param artist the artist of the song
+     * @param title the title of the song
+     * @param length the duration in seconds
+     */
+    void visit(int id, String artist, String title, int length);
+}
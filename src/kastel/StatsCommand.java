@@ -0,0 +1,28 @@
+package kastel;
+
+/**
+ * Handles the "stats" command that prints the command latencies and the
+ * queue and history gauges, see {@link CommandMetrics#report(Playlist)}.
+ * @author ujnaa
+ */
+public class StatsCommand extends KeywordCommand {
+    private static final String COMMAND = "stats";
+    private final CommandMetrics metrics;
+
+    /**
+     * Creates the command.
+     *
+     * @param metrics the metrics of the processor executing the command
+     */
+    public StatsCommand(CommandMetrics metrics) {
+        super(COMMAND);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        for (String line : metrics.report(playlist)) {
+            output.println(line);
+        }
+    }
+}
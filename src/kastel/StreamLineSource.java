@@ -0,0 +1,132 @@
+package kastel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line source reading UTF-8 text from a byte stream through a small buffer
+ * that only grows for lines longer than the buffer. Unlike a
+ * {@link java.io.InputStreamReader} it keeps no decoder buffer, which makes
+ * it suitable for many mostly idle connections.
+ * <p>
+ * Lines end with {@code "\n"} or {@code "\r\n"}. A line may take at most
+ * {@link #MAX_LINE_BYTES} bytes including its terminator; a longer line is
+ * rejected with an {@link IOException}. Once a long line has been read, the
+ * buffer shrinks back to its initial size.
+ * @author ujnaa
+ */
+public class StreamLineSource implements LineSource {
+    /**
+     * Maximum length of a line in bytes, including its terminator.
+     */
+    public static final int MAX_LINE_BYTES = 1 << 16;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int EXPANSION_FACTOR = 2;
+    private static final int END_OF_STREAM = -1;
+
+    private final InputStream stream;
+    private final int bufferSize;
+    private byte[] buffer;
+    private int start;  // first unread byte
+    private int end;  // end of the buffered bytes
+
+    /**
+     * Creates a line source for the given stream.
+     *
+     * @param stream the stream to read from
+     * @param bufferSize initial size of the read buffer in bytes, at most
+     *                   {@link #MAX_LINE_BYTES}
+     */
+    public StreamLineSource(InputStream stream, int bufferSize) {
+        this.stream = stream;
+        this.bufferSize = bufferSize;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        int scanned = start;
+        while (true) {
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == LINE_FEED) {
+                    int lineEnd = i > start && buffer[i - 1] == CARRIAGE_RETURN ? i - 1 : i;
+                    String line = decode(lineEnd);
+                    start = i + 1;
+                    shrink();
+                    return line;
+                }
+            }
+            scanned = end - start;
+            if (!fill()) {
+                if (start == end) {
+                    return null;
+                }
+                String line = decode(end);
+                start = end;
+                return line;
+            }
+            scanned += start;
+        }
+    }
+
+    @Override
+    public boolean hasBufferedInput() throws IOException {
+        return start < end || stream.available() > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    private String decode(int lineEnd) {
+        return new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces a grown buffer by one of the initial size once the unread
+     * bytes fit into it again.
+     */
+    private void shrink() {
+        int unread = end - start;
+        if (buffer.length > bufferSize && unread <= bufferSize) {
+            byte[] smaller = new byte[bufferSize];
+            System.arraycopy(buffer, start, smaller, 0, unread);
+            buffer = smaller;
+            start = 0;
+            end = unread;
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, grows it if it is
+     * full and reads more bytes.
+     *
+     * @return {@code false} at the end of the stream
+     * @throws IOException if reading fails or the unread line is longer than
+     *                     {@link #MAX_LINE_BYTES}
+     */
+    private boolean fill() throws IOException {
+        int unread = end - start;
+        if (unread == buffer.length) {
+            if (unread >= MAX_LINE_BYTES) {
+                throw new IOException("line longer than " + MAX_LINE_BYTES + " bytes");
+            }
+            byte[] larger = new byte[Math.min(buffer.length * EXPANSION_FACTOR, MAX_LINE_BYTES)];
+            System.arraycopy(buffer, start, larger, 0, unread);
+            buffer = larger;
+        } else if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, unread);
+        }
+        start = 0;
+        end = unread;
+        int read = stream.read(buffer, end, buffer.length - end);
+        if (read == END_OF_STREAM) {
+            return false;
+        }
+        end += read;
+        return true;
+    }
+}
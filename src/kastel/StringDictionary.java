@@ -0,0 +1,79 @@
+package kastel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense numeric codes to strings so that repeated values are stored
+ * only once.
+ * @author ujnaa
+ */
+public class StringDictionary {
+    /** result of {@link #find(String)} for strings without a code */
+    public static final int NOT_FOUND = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EXPANSION_FACTOR = 2;
+
+    private final Map<String, Integer> codes;
+    private String[] values;
+    private int size;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public StringDictionary() {
+        codes = new HashMap<>();
+        values = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gets the code of the given string, registering it if it is new.
+     *
+     * @param value the string to encode
+     * @return the code of the string
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            String[] newValues = new String[values.length * EXPANSION_FACTOR];
+            System.arraycopy(values, 0, newValues, 0, size);
+            values = newValues;
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Gets the code of the given string without registering it.
+     *
+     * @param value the string to look up
+     * @return the code of the string, or {@link #NOT_FOUND} if it has none
+     */
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? NOT_FOUND : code;
+    }
+
+    /**
+     * Gets the string with the given code.
+     *
+     * @param code a code returned by {@link #encode(String)}
+     * @return the encoded string
+     */
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Gets the number of distinct strings.
+     *
+     * @return the dictionary size
+     */
+    public int size() {
+        return size;
+    }
+}
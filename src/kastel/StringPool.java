@@ -0,0 +1,88 @@
+package kastel;
+
+/**
+ * Bounded pool of strings that lets repeated artists and titles share a
+ * single {@link String} instance.
+ * <p>
+ * The pool is a direct-mapped table: every string has exactly one slot,
+ * chosen by its hash code, and a string that is not found replaces the
+ * previous occupant of its slot. Memory is therefore bounded by the
+ * capacity, and frequent values stay in the pool because they are put back
+ * as soon as they are missed. A lookup compares the characters of the text
+ * in place, so a hit allocates nothing.
+ * <p>
+ * The pool may be shared between threads without locking. Strings are
+ * immutable, so a thread either sees a complete string in a slot or an
+ * older one; a lost update only costs a later miss.
+ * <p>
+ * {@link ByteText} returns raw bytes as characters, which differ from the
+ * decoded characters for non-ASCII text. Such text is decoded without
+ * consulting the pool.
+ * @author ujnaa
+ */
+public final class StringPool {
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int SPREAD_SHIFT = 16;
+    private static final char ASCII_LIMIT = 0x80;
+
+    private final String[] slots;
+    private final int mask;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity maximum amount of pooled strings, a power of two
+     * @throws IllegalArgumentException if the capacity is not a power of two
+     */
+    public StringPool(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+        }
+        this.slots = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gets a string with the characters {@code [from, to)} of the text,
+     * reusing the pooled instance if there is one.
+     *
+     * @param text the text holding the characters
+     * @param from index of the first character
+     * @param to index after the last character
+     * @return the string
+     */
+    public String intern(CharSequence text, int from, int to) {
+        boolean rawBytes = text instanceof ByteText;
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (rawBytes && c >= ASCII_LIMIT) {
+                return text.subSequence(from, to).toString();
+            }
+            hash = HASH_MULTIPLIER * hash + c;
+        }
+        int slot = (hash ^ (hash >>> SPREAD_SHIFT)) & mask;
+        String pooled = slots[slot];
+        if (pooled != null && pooled.hashCode() == hash && matches(pooled, text, from, to)) {
+            return pooled;
+        }
+        String value = text.subSequence(from, to).toString();
+        slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String pooled, CharSequence text, int from, int to) {
+        if (pooled.length() != to - from) {
+            return false;
+        }
+        if (text instanceof String string) {
+            return pooled.regionMatches(0, string, from, to - from);
+        }
+        for (int i = from; i < to; i++) {
+            if (pooled.charAt(i - from) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package kastel;
+
+/**
+ * Handles the "subscribe" command that streams every later change of the
+ * playlist to the output, see {@link ChangeStream}.
+ * @author ujnaa
+ */
+public class SubscribeCommand extends KeywordCommand {
+    private static final String COMMAND = "subscribe";
+    private final ChangeStream changes;
+
+    /**
+     * Creates the command.
+     *
+     * @param changes the change stream of the processor executing the command
+     */
+    public SubscribeCommand(ChangeStream changes) {
+        super(COMMAND);
+        this.changes = changes;
+    }
+
+    @Override
+    public void execute(String arguments, Playlist playlist, Output output) {
+        changes.subscribe(playlist);
+    }
+}
@@ -0,0 +1,296 @@
+package kastel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel that runs scheduled tasks on a single thread.
+ * <p>
+ * Time is divided into ticks of a configurable length. The wheel has
+ * {@value #LEVELS} levels of {@value #SLOTS} slots; a slot of level
+ * {@code l} covers {@code 64^l} ticks, so scheduling and cancelling a task
+ * take constant time regardless of the delay. Tasks of higher levels move
+ * down one level when their slot comes due. Like {@link PriorityScheduler},
+ * every level keeps a bitmap of its occupied slots, which lets the thread
+ * compute the next tick at which anything happens and sleep until then
+ * instead of waking up on every tick.
+ * <p>
+ * Tasks never run early but may run up to one tick late. They run on the
+ * wheel thread and should therefore be short; an exception thrown by a task
+ * is reported to the uncaught exception handler of the thread and does not
+ * affect other tasks.
+ * @author ujnaa
+ */
+public class TimingWheel implements Closeable {
+    /** tick length used by default */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int LEVELS = 6;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long NO_TICK = Long.MAX_VALUE;
+    private static final String THREAD_NAME = "timing-wheel";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final long tickNanos;
+    private final long origin;
+    private final Timeout[][] slots;  // slots[level][slot] = head of a linked list
+    private final long[] occupied;  // occupied[level] has bit slot set if the slot is not empty
+    private final Thread thread;
+    private long currentTick;
+    private long plannedWakeTick = NO_TICK;
+    private boolean closed;
+
+    /**
+     * Creates a wheel and starts its thread.
+     *
+     * @param tickMillis length of a tick, the granularity of the wheel
+     */
+    public TimingWheel(long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.origin = System.nanoTime();
+        this.slots = new Timeout[LEVELS][SLOTS];
+        this.occupied = new long[LEVELS];
+        this.thread = Thread.ofPlatform().name(THREAD_NAME).daemon().start(this::run);
+    }
+
+    /**
+     * Runs a task once after the given delay.
+     *
+     * @param task the task to run
+     * @param delayNanos the minimum delay in nanoseconds
+     * @return handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delayNanos) {
+        long now = System.nanoTime();
+        long deadline = Math.ceilDiv(now - origin + Math.max(0, delayNanos), tickNanos);
+        Timeout timeout = new Timeout(task, deadline);
+        lock.lock();
+        try {
+            insert(timeout);
+            if (nextEventTick() < plannedWakeTick) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel thread. Pending tasks are dropped.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        List<Timeout> expired = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                long target = awaitNextEvent();
+                if (target == NO_TICK) {
+                    return;
+                }
+                advanceTo(target, expired);
+            } finally {
+                lock.unlock();
+            }
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    // a failing task must not stop the tasks of other owners
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Sleeps until the next tick at which a task is due or moves down a
+     * level, or until the wheel changes.
+     *
+     * @return the tick reached, or {@link #NO_TICK} once the wheel is closed
+     */
+    private long awaitNextEvent() {
+        while (!closed) {
+            long now = (System.nanoTime() - origin) / tickNanos;
+            long next = nextEventTick();
+            if (next <= now) {
+                plannedWakeTick = NO_TICK;
+                return now;
+            }
+            plannedWakeTick = next;
+            if (next == NO_TICK) {
+                changed.awaitUninterruptibly();
+            } else {
+                try {
+                    changed.awaitNanos(next * tickNanos + origin - System.nanoTime());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return NO_TICK;
+                }
+            }
+        }
+        return NO_TICK;
+    }
+
+    /**
+     * Advances the wheel to the target tick, moving tasks down the levels as
+     * their slots come due and collecting the expired ones.
+     */
+    private void advanceTo(long target, List<Timeout> expired) {
+        long next = nextEventTick();
+        while (next <= target) {
+            currentTick = next;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                    Timeout timeout = detachSlot(level, slot);
+                    while (timeout != null) {
+                        Timeout following = timeout.next;
+                        timeout.next = null;
+                        if (timeout.deadline <= currentTick) {
+                            expired.add(timeout);
+                        } else {
+                            insert(timeout);
+                        }
+                        timeout = following;
+                    }
+                }
+            }
+            Timeout timeout = detachSlot(0, (int) currentTick & SLOT_MASK);
+            while (timeout != null) {
+                expired.add(timeout);
+                Timeout following = timeout.next;
+                timeout.next = null;
+                timeout = following;
+            }
+            next = nextEventTick();
+        }
+        currentTick = target;
+    }
+
+    /**
+     * Finds the next tick after the current one at which a level 0 slot
+     * expires or a slot of a higher level moves down.
+     */
+    private long nextEventTick() {
+        long next = NO_TICK;
+        for (int level = 0; level < LEVELS; level++) {
+            if (occupied[level] != 0) {
+                int shift = SLOT_BITS * level;
+                long bucket = currentTick >>> shift;
+                int current = (int) bucket & SLOT_MASK;
+                long ahead = Long.rotateRight(occupied[level], current + 1);
+                long distance = Long.numberOfTrailingZeros(ahead) + 1;
+                next = Math.min(next, (bucket + distance) << shift);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Puts a task into the lowest level whose slots reach its deadline. Tasks
+     * beyond the range of the wheel wait in the farthest slot of the top
+     * level.
+     */
+    private void insert(Timeout timeout) {
+        long deadline = Math.max(timeout.deadline, currentTick + 1);
+        int level = 0;
+        while (level < LEVELS - 1
+                && (deadline >>> (SLOT_BITS * level)) - (currentTick >>> (SLOT_BITS * level))
+                        >= SLOTS) {
+            level++;
+        }
+        int shift = SLOT_BITS * level;
+        long bucket = Math.min(deadline >>> shift, (currentTick >>> shift) + SLOT_MASK);
+        int slot = (int) bucket & SLOT_MASK;
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.previous = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        slots[level][slot] = timeout;
+        occupied[level] |= 1L << slot;
+        timeout.scheduled = true;
+    }
+
+    private Timeout detachSlot(int level, int slot) {
+        Timeout head = slots[level][slot];
+        slots[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+            timeout.scheduled = false;
+            timeout.previous = null;
+        }
+        return head;
+    }
+
+    private void remove(Timeout timeout) {
+        if (!timeout.scheduled) {
+            return;
+        }
+        if (timeout.previous == null) {
+            slots[timeout.level][timeout.slot] = timeout.next;
+            if (timeout.next == null) {
+                occupied[timeout.level] &= ~(1L << timeout.slot);
+            }
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;  // in ticks since the origin
+        private Timeout previous;
+        private Timeout next;
+        private int level;
+        private int slot;
+        private boolean scheduled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running if it has not started yet.
+         */
+        public void cancel() {
+            lock.lock();
+            try {
+                remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
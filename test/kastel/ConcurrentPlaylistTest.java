@@ -0,0 +1,143 @@
+package kastel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Stress test for {@link ConcurrentPlaylist}. Several producer threads add
+ * songs of random priorities, one of them partly through
+ * {@link Playlist#addNext(Song)}, while a consumer thread plays them. Every
+ * song lasts one second. Afterwards the history has to contain every added
+ * song exactly once, and the songs a producer added with the same priority
+ * through {@code addSong} in the order they were added. An exception in any
+ * of the threads fails the test.
+ * @author ujnaa
+ */
+class ConcurrentPlaylistTest {
+    private static final int PRODUCERS = 4;
+    private static final int SONGS_PER_PRODUCER = 50_000;
+    private static final int ROUNDS = 3;
+    private static final int MAX_PLAY_SECONDS = 64;
+    private static final int NEXT_EVERY = 16;
+    private static final int SONG_LENGTH = 1;
+    private static final int NO_ENTRY = -1;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    /**
+     * Runs producers and a consumer concurrently and checks the history.
+     *
+     * @throws InterruptedException if the test thread is interrupted
+     */
+    @Test
+    @Timeout(value = TIMEOUT_SECONDS, unit = TimeUnit.SECONDS)
+    void playsEverySongOnceInProducerOrder() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            runRound(round);
+        }
+    }
+
+    private static void runRound(long seed) throws InterruptedException {
+        ConcurrentPlaylist playlist = new ConcurrentPlaylist();
+        int total = PRODUCERS * SONGS_PER_PRODUCER;
+        int[] priorities = new int[total];
+        boolean[] addedNext = new boolean[total];
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger finishedProducers = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            int first = producer * SONGS_PER_PRODUCER;
+            boolean usesNext = producer == 0;
+            Random random = new Random(seed * PRODUCERS + producer);
+            threads.add(new Thread(() -> {
+                await(start);
+                try {
+                    for (int id = first; id < first + SONGS_PER_PRODUCER; id++) {
+                        int priority = random.nextInt(playlist.getNumPriorities());
+                        priorities[id] = priority;
+                        if (usesNext && id % NEXT_EVERY == 0) {
+                            addedNext[id] = true;
+                            playlist.addNext(new Song(id, "artist", "title", SONG_LENGTH, 0));
+                        } else {
+                            playlist.addSong(new Song(id, "artist", "title", SONG_LENGTH,
+                                    priority));
+                        }
+                    }
+                } finally {
+                    finishedProducers.incrementAndGet();
+                }
+            }));
+        }
+        Random consumerRandom = new Random(~seed);
+        threads.add(new Thread(() -> {
+            await(start);
+            while (finishedProducers.get() < PRODUCERS || playlist.peek() != null) {
+                playlist.play(1 + consumerRandom.nextInt(MAX_PLAY_SECONDS));
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get(), "round " + seed + ": a thread failed");
+        int[] played = new int[playlist.historySize()];
+        playlist.forEachHistory(0, played.length, new SongVisitor() {
+            private int index;
+
+            @Override
+            public void visit(int id, String artist, String title, int length) {
+                played[index++] = id;
+            }
+        });
+        check(seed, played, priorities, addedNext);
+    }
+
+    private static void check(long seed, int[] played, int[] priorities, boolean[] addedNext) {
+        int total = priorities.length;
+        assertEquals(total, played.length, "round " + seed + ": history size");
+        boolean[] seen = new boolean[total];
+        int[][] lastByPriority = new int[PRODUCERS][Playlist.DEFAULT_NUM_PRIORITIES];
+        for (int[] last : lastByPriority) {
+            Arrays.fill(last, NO_ENTRY);
+        }
+        for (int id : played) {
+            String context = "round " + seed + ": song " + id;
+            assertTrue(id >= 0 && id < total, context + " was never added");
+            assertFalse(seen[id], context + " played twice");
+            seen[id] = true;
+            if (addedNext[id]) {
+                continue;
+            }
+            int[] last = lastByPriority[id / SONGS_PER_PRODUCER];
+            assertTrue(last[priorities[id]] < id,
+                    context + " played after " + last[priorities[id]]);
+            last[priorities[id]] = id;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package kastel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the play time bookkeeping of {@link SongQueue}. Random sequences of
+ * additions, removals and plays, including songs with negative or zero
+ * length, run against a queue and a plain list model. After every step the
+ * total play time has to match the model, and every batch of finished songs
+ * computed by {@link SongQueue#finishingSpan(long)} has to be exactly the
+ * songs the model finishes in the same time.
+ * @author ujnaa
+ */
+class SongQueueTest {
+    private static final int ROUNDS = 200;
+    private static final int STEPS = 2_000;
+    private static final int MAX_ID = 40;
+    private static final int MAX_LENGTH = 300;
+    private static final int MAX_NEGATIVE_LENGTH = 50;
+    private static final int NEGATIVE_EVERY = 25;
+    private static final int ZERO_EVERY = 15;
+    private static final int MAX_PLAY_SECONDS = 900;
+    private static final int MAX_BATCH = 32;
+    private static final int OPERATIONS = 100;
+    private static final int ADD_LAST_BELOW = 35;
+    private static final int ADD_FIRST_BELOW = 45;
+    private static final int APPEND_ALL_BELOW = 48;
+    private static final int REMOVE_BELOW = 58;
+    private static final int POLL_FIRST_BELOW = 68;
+    private static final int PRIORITY = 0;
+
+    /**
+     * Compares random operation sequences with the list model.
+     */
+    @Test
+    void matchesListModel() {
+        for (int round = 0; round < ROUNDS; round++) {
+            runRound(round);
+        }
+    }
+
+    /**
+     * Replays the script of the original report: a played song of negative
+     * length used to leave a stale play time behind, so the following song
+     * finished too late.
+     */
+    @Test
+    void playedNegativeSongDoesNotDelayNextSong() {
+        Playlist playlist = new Playlist();
+        playlist.addNext(new Song(1, "a", "b", -5, PRIORITY));
+        playlist.play(1);
+        playlist.addSong(new Song(2, "a", "b", 3, PRIORITY));
+        playlist.play(3);
+        assertArrayEquals(new String[]{"00001:a:b:-5", "00002:a:b:3"}, playlist.history());
+    }
+
+    private static void runRound(long seed) {
+        Random random = new Random(seed);
+        SongQueue queue = new SongQueue();
+        List<Song> model = new ArrayList<>();
+        HistoryLog history = new HistoryLog();
+        for (int step = 0; step < STEPS; step++) {
+            String context = "seed " + seed + " step " + step;
+            int operation = random.nextInt(OPERATIONS);
+            if (operation < ADD_LAST_BELOW) {
+                Song song = randomSong(random);
+                queue.addLast(song);
+                model.add(song);
+            } else if (operation < ADD_FIRST_BELOW) {
+                Song song = randomSong(random);
+                queue.addFirst(song);
+                model.add(0, song);
+            } else if (operation < APPEND_ALL_BELOW) {
+                Song[] songs = new Song[random.nextInt(MAX_BATCH)];
+                for (int i = 0; i < songs.length; i++) {
+                    songs[i] = randomSong(random);
+                }
+                queue.appendAll(songs, 0, songs.length);
+                model.addAll(Arrays.asList(songs));
+            } else if (operation < REMOVE_BELOW) {
+                int id = random.nextInt(MAX_ID);
+                queue.removeById(id);
+                model.removeIf(song -> song.getId() == id);
+            } else if (operation < POLL_FIRST_BELOW) {
+                assertSame(model.isEmpty() ? null : model.remove(0), queue.pollFirst(), context);
+            } else {
+                playSpan(queue, model, history, 1 + random.nextInt(MAX_PLAY_SECONDS), context);
+            }
+            assertEquals(model.size(), queue.size(), context);
+            assertEquals(playTime(model), queue.playTime(), context);
+        }
+    }
+
+    /**
+     * Finishes the songs of the given time through the queue and the model
+     * and compares the songs that moved to the history.
+     */
+    private static void playSpan(SongQueue queue, List<Song> model, HistoryLog history,
+                                 long seconds, String context) {
+        int slots = queue.finishingSpan(seconds);
+        if (slots == 0) {
+            assertSame(model.isEmpty() ? null : model.remove(0), queue.pollFirst(), context);
+            return;
+        }
+        int expected = 0;
+        long elapsed = 0;
+        for (Song song : model) {
+            assertTrue(song.getRemainingTime() >= 0, context + ": span over a negative song");
+            if (elapsed >= seconds || elapsed + song.getRemainingTime() > seconds) {
+                break;
+            }
+            elapsed += song.getRemainingTime();
+            expected++;
+        }
+        int before = history.size();
+        long playTime = queue.pollSpan(slots, history);
+        List<Song> finished = model.subList(0, expected);
+        assertEquals(expected, history.size() - before, context);
+        assertEquals(playTime(finished), playTime, context);
+        finished.clear();
+    }
+
+    private static Song randomSong(Random random) {
+        int length = random.nextInt(MAX_LENGTH);
+        if (random.nextInt(NEGATIVE_EVERY) == 0) {
+            length = -1 - random.nextInt(MAX_NEGATIVE_LENGTH);
+        } else if (random.nextInt(ZERO_EVERY) == 0) {
+            length = 0;
+        }
+        return new Song(random.nextInt(MAX_ID), "a", "t", length, PRIORITY);
+    }
+
+    private static long playTime(List<Song> songs) {
+        long total = 0;
+        for (Song song : songs) {
+            total += song.getRemainingTime();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,167 @@
+package kastel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator for {@link PlaylistServer}. Opens many concurrent sessions
+ * on localhost, one virtual thread per client, and measures the latency of
+ * request lines that add a song and peek at the playlist, from writing the
+ * request until the answer line arrives.
+ * <p>
+ * Without a port argument an in-process server is started, and the heap
+ * used per idle session (server and client side together) is reported
+ * after all sessions have connected.
+ * <p>
+ * Run with {@code java -Xmx2g -cp <classes> kastel.ServerLoadGenerator
+ * [sessions] [requestsPerSession] [port]}. Each session needs two file
+ * descriptors when the server runs in-process.
+ * @author ujnaa
+ */
+public final class ServerLoadGenerator {
+    private static final int DEFAULT_SESSIONS = 10_000;
+    private static final int DEFAULT_REQUESTS = 50;
+    private static final int CLIENT_BUFFER_SIZE = 1 << 10;
+    private static final int PRIORITIES = 6;
+    private static final int SONG_LENGTH = 180;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double MEDIAN = 0.5;
+    private static final double P99 = 0.99;
+    private static final long BYTES_PER_KIB = 1 << 10;
+    private static final String READY_REQUEST = "add 0:Ready:Ready:1:5\npeek\n";
+
+    private ServerLoadGenerator() {
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args optional amount of sessions, requests per session and port
+     *             of a running server
+     * @throws Exception if the server cannot be started or a thread is
+     *                   interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SESSIONS;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS;
+        PlaylistServer server = null;
+        int port;
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            server = new PlaylistServer(0, Playlist.DEFAULT_NUM_PRIORITIES);
+            PlaylistServer started = server;
+            Thread.ofPlatform().daemon().start(() -> {
+                try {
+                    started.serve();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            port = server.getPort();
+        }
+        long heapBefore = usedHeap();
+        long[][] latencies = new long[sessions][];
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        long start;
+        long elapsed;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int session = 0; session < sessions; session++) {
+                int index = session;
+                clients.execute(() -> {
+                    try {
+                        latencies[index] = runClient(port, index, requests, connected, go);
+                    } catch (IOException | InterruptedException e) {
+                        failures.incrementAndGet();
+                        connected.countDown();
+                    }
+                });
+            }
+            connected.await();
+            if (server != null) {
+                long perSession = (usedHeap() - heapBefore) / sessions;
+                System.out.printf("heap per idle session: %.1f KiB%n",
+                        (double) perSession / BYTES_PER_KIB);
+            }
+            start = System.nanoTime();
+            go.countDown();
+        }
+        elapsed = System.nanoTime() - start;
+        if (server != null) {
+            server.close();
+        }
+        report(latencies, failures.get(), elapsed);
+    }
+
+    /**
+     * Connects, waits until every client is connected and then sends the
+     * requests one after another.
+     *
+     * @return the latency of every request in nanoseconds
+     */
+    private static long[] runClient(int port, int session, int requests,
+                                    CountDownLatch connected, CountDownLatch go)
+            throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            LineSource in = new StreamLineSource(socket.getInputStream(), CLIENT_BUFFER_SIZE);
+            out.write(READY_REQUEST.getBytes(StandardCharsets.UTF_8));
+            in.readLine();
+            connected.countDown();
+            go.await();
+            long[] latencies = new long[requests];
+            for (int i = 0; i < requests; i++) {
+                byte[] request = ("add " + i + ":Artist " + session + ":Title " + i + ":"
+                        + SONG_LENGTH + ":" + i % PRIORITIES + "\npeek\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                long sent = System.nanoTime();
+                out.write(request);
+                if (in.readLine() == null) {
+                    throw new IOException("connection closed");
+                }
+                latencies[i] = System.nanoTime() - sent;
+            }
+            out.write("quit\n".getBytes(StandardCharsets.UTF_8));
+            return latencies;
+        }
+    }
+
+    private static void report(long[][] latencies, int failures, long elapsed) {
+        long[] all = Arrays.stream(latencies)
+                .filter(session -> session != null)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        if (all.length == 0) {
+            System.out.println("no successful requests, " + failures + " failed sessions");
+            return;
+        }
+        System.out.printf("sessions: %d ok, %d failed%n", latencies.length - failures, failures);
+        System.out.printf("requests: %d in %.0f ms (%.0f/s)%n", all.length,
+                elapsed / NANOS_PER_MILLI, all.length * NANOS_PER_MILLI * 1000 / elapsed);
+        System.out.printf("latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms%n",
+                all[(int) (all.length * MEDIAN)] / NANOS_PER_MILLI,
+                all[(int) (all.length * P99)] / NANOS_PER_MILLI,
+                all[all.length - 1] / NANOS_PER_MILLI);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,140 @@
+package kastel;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reports the heap saved by the {@link StringPool} of {@link SongParser}.
+ * <p>
+ * A catalog of distinct songs is generated whose artists follow a Zipf
+ * distribution, and enqueue requests pick songs with a Zipf distribution as
+ * well, so popular songs are queued many times. All requests are parsed
+ * and kept, once with the pooled strings and once with private copies of
+ * every artist and title as the parser created them before pooling, and
+ * the retained heap of both is compared.
+ * <p>
+ * Run with {@code java -Xmx4g -cp <classes> kastel.StringPoolHeapReport
+ * [requests] [distinctSongs] [artists]}.
+ * @author ujnaa
+ */
+public final class StringPoolHeapReport {
+    private static final int DEFAULT_REQUESTS = 2_000_000;
+    private static final int DEFAULT_SONGS = 200_000;
+    private static final int DEFAULT_ARTISTS = 20_000;
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final int MAX_LENGTH = 600;
+    private static final int PRIORITIES = 6;
+    private static final int GC_ROUNDS = 3;
+    private static final double BYTES_PER_MIB = 1 << 20;
+    private static final long SEED = 7;
+
+    private StringPoolHeapReport() {
+    }
+
+    /**
+     * Generates the requests and prints the heap retained with and without
+     * pooling.
+     *
+     * @param args optional amount of requests, distinct songs and artists
+     */
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REQUESTS;
+        int distinctSongs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SONGS;
+        int artists = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ARTISTS;
+        String[] lines = generate(requests, distinctSongs, artists);
+
+        long before = usedHeap();
+        Song[] pooled = parse(lines);
+        long pooledBytes = usedHeap() - before;
+        Reference.reachabilityFence(lines);
+        Reference.reachabilityFence(pooled);
+        long distinct = Arrays.stream(pooled)
+                .map(Song::getArtist)
+                .filter(artist -> artist != null)
+                .map(System::identityHashCode)
+                .distinct()
+                .count();
+        pooled = null;
+
+        before = usedHeap();
+        Song[] copied = parse(lines);
+        for (int i = 0; i < copied.length; i++) {
+            Song song = copied[i];
+            copied[i] = new Song(song.getId(), new String(song.getArtist().toCharArray()),
+                    new String(song.getTitle().toCharArray()), song.getLength(),
+                    song.getPriority());
+        }
+        long copiedBytes = usedHeap() - before;
+        Reference.reachabilityFence(lines);
+        Reference.reachabilityFence(copied);
+
+        System.out.printf("requests: %d, distinct songs: %d, artists: %d%n", requests,
+                distinctSongs, artists);
+        System.out.printf("without pool: %.1f MiB (%.1f bytes per song)%n",
+                copiedBytes / BYTES_PER_MIB, (double) copiedBytes / requests);
+        System.out.printf("with pool:    %.1f MiB (%.1f bytes per song)%n",
+                pooledBytes / BYTES_PER_MIB, (double) pooledBytes / requests);
+        System.out.printf("saved:        %.1f%%, artist instances with pool: %d%n",
+                100.0 * (copiedBytes - pooledBytes) / copiedBytes, distinct);
+    }
+
+    /**
+     * Generates enqueue requests in the format of the add command without
+     * the keyword.
+     */
+    private static String[] generate(int requests, int distinctSongs, int artists) {
+        Random random = new Random(SEED);
+        double[] artistWeights = zipf(artists);
+        String[] songs = new String[distinctSongs];
+        for (int id = 0; id < distinctSongs; id++) {
+            int artist = sample(artistWeights, random);
+            songs[id] = id + ":Artist " + artist + ":Title " + id % (distinctSongs / 2) + ":"
+                    + (1 + random.nextInt(MAX_LENGTH)) + ":";
+        }
+        double[] songWeights = zipf(distinctSongs);
+        String[] lines = new String[requests];
+        for (int i = 0; i < requests; i++) {
+            lines[i] = songs[sample(songWeights, random)] + random.nextInt(PRIORITIES);
+        }
+        return lines;
+    }
+
+    private static Song[] parse(String[] lines) {
+        Song[] songs = new Song[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            songs[i] = SongParser.parseWithPriority(lines[i]);
+        }
+        return songs;
+    }
+
+    /**
+     * Computes the cumulative weights of a Zipf distribution over the given
+     * amount of ranks.
+     */
+    private static double[] zipf(int ranks) {
+        double[] cumulative = new double[ranks];
+        double sum = 0;
+        for (int rank = 0; rank < ranks; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < ranks; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
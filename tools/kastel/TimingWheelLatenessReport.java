@@ -0,0 +1,62 @@
+package kastel;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how late {@link TimingWheel} runs expiring tasks. Tasks with
+ * random delays are left to expire, and the difference between their
+ * deadline and the moment they run is printed as a distribution. The cost
+ * of scheduling is measured by the JMH benchmark
+ * {@code TimingWheelBenchmark}.
+ * <p>
+ * Run with {@code java -cp <classes> kastel.TimingWheelLatenessReport
+ * [expiringTasks] [tickMillis]}.
+ * @author ujnaa
+ */
+public final class TimingWheelLatenessReport {
+    private static final int DEFAULT_EXPIRING = 100_000;
+    private static final int MAX_DELAY_MILLIS = 3_000;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double MEDIAN = 0.5;
+    private static final double P99 = 0.99;
+
+    private TimingWheelLatenessReport() {
+    }
+
+    /**
+     * Lets the tasks expire and prints the distribution of their lateness.
+     *
+     * @param args optional amount of expiring tasks and tick length in
+     *             milliseconds
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EXPIRING;
+        long tickMillis = args.length > 1 ? Long.parseLong(args[1])
+                : TimingWheel.DEFAULT_TICK_MILLIS;
+        long[] lateness = new long[tasks];
+        try (TimingWheel wheel = new TimingWheel(tickMillis)) {
+            CountDownLatch done = new CountDownLatch(tasks);
+            Random random = new Random(tasks);
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                long delay = TimeUnit.MILLISECONDS.toNanos(random.nextInt(MAX_DELAY_MILLIS));
+                long deadline = System.nanoTime() + delay;
+                wheel.schedule(() -> {
+                    lateness[index] = System.nanoTime() - deadline;
+                    done.countDown();
+                }, delay);
+            }
+            done.await();
+        }
+        Arrays.sort(lateness);
+        System.out.printf("lateness with %d ms ticks: min %.3f ms, p50 %.3f ms, p99 %.3f ms,"
+                        + " max %.3f ms%n", tickMillis, lateness[0] / NANOS_PER_MILLI,
+                lateness[(int) (tasks * MEDIAN)] / NANOS_PER_MILLI,
+                lateness[(int) (tasks * P99)] / NANOS_PER_MILLI,
+                lateness[tasks - 1] / NANOS_PER_MILLI);
+    }
+}